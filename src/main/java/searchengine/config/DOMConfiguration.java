@@ -1,41 +1,40 @@
 package searchengine.config;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.context.properties.ConstructorBinding;
 import org.springframework.stereotype.Component;
+import searchengine.utils.FetchMode;
+import searchengine.utils.FetchResult;
+import searchengine.utils.PageFetcher;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Component
-@ConstructorBinding
+@RequiredArgsConstructor
 public class DOMConfiguration {
 
-    @Value("${dom-settings.userAgent}")
-    private String userAgent;
+    private final PageFetcher pageFetcher;
 
-    @Value("${dom-settings.referer}")
-    private String referer;
+    public FetchResult fetch(String url) {
+        return fetch(url, Collections.emptyMap());
+    }
 
-    @Value("${dom-settings.delayMs}")
-    private String delayMs;
+    public FetchResult fetch(String url, Map<String, String> headers) {
+        return fetchAsync(url, headers, FetchMode.PAGE).join();
+    }
 
+    public FetchResult fetchResource(String url) {
+        return fetchAsync(url, Collections.emptyMap(), FetchMode.RESOURCE).join();
+    }
 
-    public Document getDocument(String url) {
-        try {
-            Document doc = Jsoup.connect(url)
-                    .userAgent(userAgent)
-                    .referrer(referer)
-                    .ignoreContentType(true)
-                    .ignoreHttpErrors(true)
-                    .maxBodySize(0).get();
-            Thread.sleep(Long.parseLong(delayMs));
-            return doc;
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+    public CompletableFuture<FetchResult> fetchAsync(String url, Map<String, String> headers, FetchMode mode) {
+        return pageFetcher.fetch(url, headers, mode).exceptionally(e -> {
+            log.error("Fail to load page - " + url + " - " + e.getMessage(), e);
             return null;
-        }
+        });
     }
 
 }
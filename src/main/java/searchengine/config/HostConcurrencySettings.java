@@ -0,0 +1,34 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "dom-settings.adaptive")
+public class HostConcurrencySettings {
+    private boolean enabled = false;
+    private int initialConcurrency = 2;
+    private int minConcurrency = 1;
+    private int maxConcurrency = 16;
+    private Long minDelayMs;
+    private double latencyTolerance = 2.0;
+    private double decreaseFactor = 0.5;
+    private double latencyWeight = 0.2;
+    private long maxRetryAfterMs = 120000;
+    private Map<String, HostLimits> hosts = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class HostLimits {
+        private Integer minConcurrency;
+        private Integer maxConcurrency;
+        private Long minDelayMs;
+    }
+}
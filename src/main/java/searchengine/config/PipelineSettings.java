@@ -0,0 +1,23 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.pipeline")
+public class PipelineSettings {
+    private CrawlExecutor executor = CrawlExecutor.FORKJOIN;
+    private int maxVirtualFetches = 256;
+    private int fetchWorkers = 32;
+    private int siteConcurrency = 8;
+    private int parseWorkers = 4;
+    private int lemmatizeWorkers = Runtime.getRuntime().availableProcessors();
+    private long writeBufferBytes = 64L * 1024 * 1024;
+    private int writeBatchSize = 200;
+    private long writeIntervalMs = 1000;
+    private int queueCapacity = 256;
+}
@@ -3,9 +3,15 @@ package searchengine.config;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Duration;
+
 @Setter
 @Getter
 public class Site {
     private String url;
     private String name;
+    private Integer concurrency;
+    private Integer maxPages;
+    private Integer maxDepth;
+    private Duration maxDuration;
 }
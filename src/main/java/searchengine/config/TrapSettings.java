@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexing-settings.traps")
+public class TrapSettings {
+    private boolean enabled = true;
+    private int maxPathSegments = 15;
+    private int maxSegmentRepetitions = 3;
+    private int maxUrlsPerTemplate = 10000;
+    private int maxParamValues = 200;
+    private int noNewContentLimit = 50;
+}
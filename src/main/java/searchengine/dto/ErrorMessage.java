@@ -11,7 +11,9 @@ public enum ErrorMessage {
     NoSitesDataInConfigFile("В конфигурационном файле остутствуют url сайтов для индексации"),
     NoConnectionToSite("Отсутствует соединение с сайтом"),
     IndexingIsInProcess("Индексация уже запущена. Перед запуском переиндексации нужно остановить текущий запуск индексации"),
-    LemmasDoublesFoundAtOneSite("Найдены дубли лемм на одном сайте"),
+    PageBudgetIsReached("Достигнут лимит количества страниц сайта, индексация сайта остановлена"),
+    CrawlerTrapsAreSuppressed("Пропущены адреса-ловушки обхода, семейств адресов: "),
+    TimeBudgetIsReached("Достигнут лимит времени индексации сайта, индексация сайта остановлена"),
 
     IndexingIsNotRun("Индексация не запущена");
 
@@ -0,0 +1,15 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class HostStatistics {
+    private String host;
+    private int concurrency;
+    private int inFlight;
+    private int waiting;
+    private long latencyMs;
+    private long baselineLatencyMs;
+    private double errorRate;
+    private long backoffMs;
+}
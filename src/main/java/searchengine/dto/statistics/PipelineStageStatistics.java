@@ -0,0 +1,13 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class PipelineStageStatistics {
+    private String name;
+    private int workers;
+    private int queueSize;
+    private int queueCapacity;
+    private long processed;
+    private double itemsPerSecond;
+}
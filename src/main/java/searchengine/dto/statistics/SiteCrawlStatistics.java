@@ -0,0 +1,16 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SiteCrawlStatistics {
+    private int queued;
+    private int fetching;
+    private int pending;
+    private int crawled;
+    private int admitted;
+    private long seconds;
+    private List<TrapStatistics> traps;
+}
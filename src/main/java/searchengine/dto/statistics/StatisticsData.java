@@ -8,4 +8,6 @@ import java.util.List;
 public class StatisticsData {
     private TotalStatistics total;
     private List<DetailedStatisticsItem> detailed;
+    private List<PipelineStageStatistics> pipeline;
+    private WriteBufferStatistics writeBuffer;
 }
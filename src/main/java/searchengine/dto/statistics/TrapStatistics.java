@@ -0,0 +1,10 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class TrapStatistics {
+    private String family;
+    private String reason;
+    private int suppressed;
+}
@@ -0,0 +1,18 @@
+package searchengine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class WriteBufferStatistics {
+    private int buffered;
+    private long bufferedBytes;
+    private int writing;
+    private long writingBytes;
+    private long maxBytes;
+    private long flushes;
+    private long written;
+    private long failed;
+    private long blockedPuts;
+    private long lastFlushMs;
+    private double itemsPerSecond;
+}
@@ -0,0 +1,57 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Entity
+@Table(name = "frontier", uniqueConstraints = @UniqueConstraint(name = "frontier_url", columnNames = {"site_id", "fingerprint"}))
+public class FrontierEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(nullable = false)
+    private long fingerprint;
+
+    @Column(nullable = false, columnDefinition = "VARCHAR(768)")
+    private String path;
+
+    @Column(nullable = false)
+    private int depth;
+
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private FrontierStatus status;
+
+    @Override
+    public String toString() {
+        return "FrontierEntry{" +
+                "id=" + id +
+                ", path='" + path + '\'' +
+                ", depth=" + depth +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,7 @@
+package searchengine.model;
+
+public enum FrontierStatus {
+    PENDING,
+    IN_PROGRESS,
+    DONE
+}
@@ -14,25 +14,31 @@ import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 import java.util.Objects;
 
 @Getter
 @Setter
 @RequiredArgsConstructor
 @Entity
-@Table(indexes = @Index(name = "lemma_index", columnList = "lemma"))
+@Table(indexes = @Index(name = "lemma_index", columnList = "lemma"),
+        uniqueConstraints = @UniqueConstraint(name = "lemma_site_generation_lemma",
+                columnNames = {"site_id", "generation", "lemma"}))
 public class Lemma {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
-    @Column(nullable = false, columnDefinition = "VARCHAR(255)")
+    @Column(nullable = false, columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin")
     private String lemma;
 
     @Column(nullable = false)
     private int frequency;
 
+    @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
@@ -4,8 +4,9 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.nodes.Document;
 import org.springframework.http.HttpStatus;
+import searchengine.utils.FetchResult;
+import searchengine.utils.TextExtractor;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -17,6 +18,8 @@ import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Slf4j
@@ -37,24 +40,60 @@ public class Page {
     @Column(nullable = false)
     private int code;
 
-    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    /**
+     * Html of a page being crawled; stored compressed in {@code page_content} and not loaded with the page.
+     */
+    @Transient
     private String content;
 
+    @Column(columnDefinition = "TEXT")
+    private String title;
+
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String text;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
-    public static Page constructPage(String path, Site site, Document doc) {
+    @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
+    @Column(columnDefinition = "VARCHAR(255)")
+    private String etag;
+
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String lastModified;
+
+    @Column(columnDefinition = "VARCHAR(64)")
+    private String contentHash;
+
+    private LocalDateTime lastSeen;
+
+    private Long simHash;
+
+    @Column(columnDefinition = "VARCHAR(768)")
+    private String duplicateOf;
+
+    public static Page constructPage(String path, Site site, FetchResult result, int minSimHashWords) {
         Page page = new Page();
         page.setSite(site);
+        page.setGeneration(site.getWriteGeneration());
         page.setPath(path);
-        if (doc == null || pageCodeNotValid(doc.connection().response().statusCode())) {
+        page.setLastSeen(LocalDateTime.now());
+        if (result == null || pageCodeNotValid(result.getStatusCode())) {
             log.debug("Проблема с найденной страницей - " + site.getUrl() + path);
             page.setContent("");
-            page.setCode(doc == null ? HttpStatus.INTERNAL_SERVER_ERROR.value() : doc.connection().response().statusCode());
+            page.setCode(result == null ? HttpStatus.INTERNAL_SERVER_ERROR.value() : result.getStatusCode());
         } else {
-            page.setContent(doc.toString());
-            page.setCode(doc.connection().response().statusCode());
+            page.setContent(result.getDocument().toString());
+            page.setTitle(TextExtractor.getTitle(result.getDocument()));
+            page.setText(TextExtractor.getText(result.getDocument()));
+            page.setCode(result.getStatusCode());
+            page.setEtag(result.getEtag());
+            page.setLastModified(result.getLastModified());
+            page.setContentHash(result.getContentHash());
+            page.setSimHash(result.getSimHash(minSimHashWords));
         }
         return page;
     }
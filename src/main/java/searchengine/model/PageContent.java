@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Deflate-compressed html of a page, kept apart from {@link Page} so that loading pages does not pull their bodies.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Entity
+@Table(name = "page_content")
+public class PageContent {
+
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+}
@@ -0,0 +1,29 @@
+package searchengine.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Token positions and character offsets of all lemmas of a page, encoded by {@link searchengine.utils.PositionCodec}.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+@Entity
+@Table(name = "page_positions")
+public class PagePositions {
+
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] data;
+
+}
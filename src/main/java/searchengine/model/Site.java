@@ -38,6 +38,13 @@ public class Site {
     @Column(columnDefinition = "TEXT")
     private String lastError;
 
+    private LocalDateTime crawlStartTime;
+
+    @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int generation;
+
+    private Integer buildingGeneration;
+
     @Column(nullable = false, unique = true, columnDefinition = "VARCHAR(255)")
     private String url;
 
@@ -47,6 +54,21 @@ public class Site {
     @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY, mappedBy = "site")
     private List<Page> pages;
 
+    public int getWriteGeneration() {
+        return buildingGeneration == null ? generation : buildingGeneration;
+    }
+
+    /**
+     * Makes the generation being built the one served by search and returns the replaced generation.
+     */
+    public Integer activateBuildingGeneration() {
+        if (buildingGeneration == null) return null;
+        int previous = generation;
+        generation = buildingGeneration;
+        buildingGeneration = null;
+        return previous;
+    }
+
     @Override
     public String toString() {
         return "Site{" +
@@ -0,0 +1,23 @@
+package searchengine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.model.FrontierEntry;
+import searchengine.model.FrontierStatus;
+import searchengine.model.Site;
+
+@Repository
+public interface FrontierRepository extends JpaRepository<FrontierEntry, Integer> {
+
+    long countBySiteAndStatusNot(Site site, FrontierStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("delete from FrontierEntry f where f.site.id = :siteId")
+    void deleteBySiteId(@Param("siteId") int siteId);
+
+}
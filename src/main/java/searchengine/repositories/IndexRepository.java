@@ -1,7 +1,11 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Index;
 import searchengine.model.Lemma;
 
@@ -16,4 +20,17 @@ public interface IndexRepository extends JpaRepository<Index, Integer> {
     Optional<List<Index>> getIndexByPageIdAndLemmaId(Integer pageId, Integer lemmaId);
 
     Optional<List<Index>> getIndexByLemma(Lemma lemma);
+
+    @Query(value = "select l.lemma from `index` i join lemma l on l.id = i.lemma_id where i.page_id = :pageId",
+            nativeQuery = true)
+    List<String> getPageLemmas(@Param("pageId") int pageId);
+
+    @Query(value = "select i.id, l.lemma, i.`rank` from `index` i join lemma l on l.id = i.lemma_id " +
+            "where i.page_id = :pageId", nativeQuery = true)
+    List<Object[]> getPageIndexes(@Param("pageId") int pageId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Index i where i.page.id = :pageId")
+    void deleteByPageId(@Param("pageId") int pageId);
 }
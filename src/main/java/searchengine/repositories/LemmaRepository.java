@@ -1,6 +1,8 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.Lemma;
 import searchengine.model.Site;
@@ -11,10 +13,9 @@ import java.util.Optional;
 @Repository
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
 
-    Optional<List<Lemma>> getLemmaByLemmaAndSite(String lemma, Site site);
+    long countBySiteAndGeneration(Site site, int generation);
 
-    Optional<List<Lemma>> getLemmaBySite(Site site);
-
-    Optional<List<Lemma>> getLemmaByLemma(String lemma);
+    @Query("select l from Lemma l where l.lemma = :lemma and l.generation = l.site.generation")
+    Optional<List<Lemma>> getActiveLemmaByLemma(@Param("lemma") String lemma);
 
 }
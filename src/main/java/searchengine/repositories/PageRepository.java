@@ -1,18 +1,38 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.Page;
 import searchengine.model.Site;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PageRepository extends JpaRepository<Page, Integer> {
 
-    List<Page> getPageBySiteId(int siteId);
+    Optional<Page> getPageByPathAndSiteAndGeneration(String path, Site site, int generation);
 
-    Optional<Page> getPageByPathAndSite(String path, Site site);
+    long countBySiteAndGeneration(Site site, int generation);
+
+    @Query("select p.id from Page p where p.site = :site and p.generation = :generation " +
+            "and (p.lastSeen is null or p.lastSeen < :time)")
+    List<Integer> getPageIdsNotSeenSince(@Param("site") Site site, @Param("generation") int generation,
+                                         @Param("time") LocalDateTime time);
+
+    @Query("select p.path, p.simHash from Page p where p.site = :site and p.generation = :generation " +
+            "and p.simHash is not null and p.duplicateOf is null")
+    List<Object[]> getPageSimHashes(@Param("site") Site site, @Param("generation") int generation);
+
+    @Modifying
+    @Transactional
+    @Query("update Page p set p.lastSeen = :lastSeen, p.etag = :etag, p.lastModified = :lastModified where p.id = :id")
+    void updatePageValidators(@Param("id") int id, @Param("lastSeen") LocalDateTime lastSeen,
+                              @Param("etag") String etag, @Param("lastModified") String lastModified);
 
 }
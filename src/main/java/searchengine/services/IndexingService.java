@@ -1,7 +1,17 @@
 package searchengine.services;
 
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.statistics.PipelineStageStatistics;
+import searchengine.dto.statistics.SiteCrawlStatistics;
+import searchengine.dto.statistics.WriteBufferStatistics;
 import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.utils.Node;
+import searchengine.utils.TokenPositions;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 public interface IndexingService {
     void startIndexing();
@@ -10,5 +20,23 @@ public interface IndexingService {
 
     IndexingResponse indexPage(String url);
 
+    Map<String, TokenPositions> getPageLemmas(Page page);
+
     void savePageLemmasToDB(Page page);
+
+    void savePageLemmasToDB(Page page, Map<String, TokenPositions> lemmas);
+
+    void savePagesToDB(List<Node> nodes);
+
+    void deleteStalePages(Site site, LocalDateTime crawlStart);
+
+    void flushLemmas(Site site);
+
+    void dropGeneration(Site site, int generation);
+
+    List<PipelineStageStatistics> getPipelineStatistics();
+
+    WriteBufferStatistics getWriteBufferStatistics();
+
+    SiteCrawlStatistics getSiteCrawlStatistics(int siteId);
 }
@@ -2,37 +2,62 @@ package searchengine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.DOMConfiguration;
+import searchengine.config.PipelineSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.config.TrapSettings;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.statistics.PipelineStageStatistics;
+import searchengine.dto.statistics.SiteCrawlStatistics;
+import searchengine.dto.statistics.WriteBufferStatistics;
 import searchengine.exceptions.BadRequestException;
 import searchengine.exceptions.NotFoundException;
 import searchengine.exceptions.ServerErrorException;
-import searchengine.model.Index;
+import searchengine.model.FrontierStatus;
 import searchengine.model.IndexingStatus;
-import searchengine.model.Lemma;
 import searchengine.model.Page;
+import searchengine.repositories.FrontierRepository;
 import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.utils.BulkWriter;
+import searchengine.utils.ContentPolicy;
+import searchengine.utils.CrawlPipeline;
+import searchengine.utils.FetchResult;
+import searchengine.utils.FrontierCheckpoint;
+import searchengine.utils.LemmaDictionary;
 import searchengine.utils.LemmasFinder;
 import searchengine.utils.Node;
-import searchengine.utils.SiteMapConstructor;
+import searchengine.utils.PageContentStore;
+import searchengine.utils.PageIndexDiff;
+import searchengine.utils.PositionStore;
+import searchengine.utils.RobotsCache;
+import searchengine.utils.SimHashIndex;
+import searchengine.utils.SiteCrawlContext;
+import searchengine.utils.SitePurger;
+import searchengine.utils.SitemapReader;
+import searchengine.utils.TextExtractor;
+import searchengine.utils.TokenPositions;
+import searchengine.utils.TrapDetector;
+import searchengine.utils.UrlCanonicalizer;
+import searchengine.utils.UrlFingerprintSet;
 
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -41,7 +66,6 @@ import static searchengine.dto.ErrorMessage.IndexingIsNotRun;
 import static searchengine.dto.ErrorMessage.IndexingIsNotStopped;
 import static searchengine.dto.ErrorMessage.IndexingIsStoppedByUser;
 import static searchengine.dto.ErrorMessage.InterruptedExceptionOccuredOnStopIndexing;
-import static searchengine.dto.ErrorMessage.LemmasDoublesFoundAtOneSite;
 import static searchengine.dto.ErrorMessage.NoConnectionToSite;
 import static searchengine.dto.ErrorMessage.NoSitesDataInConfigFile;
 import static searchengine.dto.ErrorMessage.PageIsOutOfConfigFile;
@@ -55,19 +79,50 @@ public class IndexingServiceImpl implements IndexingService {
     private final SitesList sites;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final DOMConfiguration domConfiguration;
     private final LemmasFinder lemmasFinder;
-    private ForkJoinPool pool;
+    private final LemmaDictionary lemmaDictionary;
+    private final BulkWriter bulkWriter;
+    private final SitePurger sitePurger;
+    private final PageContentStore contentStore;
+    private final PositionStore positionStore;
+    private final PipelineSettings pipelineSettings;
+    private final TransactionTemplate transactionTemplate;
+    private final TrapSettings trapSettings;
+    private final FrontierRepository frontierRepository;
+    private final FrontierCheckpoint frontierCheckpoint;
+    private final RobotsCache robotsCache;
+    private final SitemapReader sitemapReader;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final ContentPolicy contentPolicy;
+    private volatile CrawlPipeline pipeline;
+    private volatile boolean indexingRunning;
+
+    @Value("${indexing-settings.visitedCapacity:1048576}")
+    private int visitedCapacity;
+
+    @Value("${indexing-settings.incremental:false}")
+    private boolean incremental;
+
+    @Value("${indexing-settings.resume:true}")
+    private boolean resume;
+
+    @Value("${indexing-settings.duplicates.enabled:true}")
+    private boolean detectDuplicates;
+
+    @Value("${indexing-settings.duplicates.maxDistance:3}")
+    private int maxDuplicateDistance;
+
+    @Value("${indexing-settings.duplicates.minWords:20}")
+    private int minDuplicateWords;
 
     @Async
     @Override
     public void startIndexing() {
         long start = System.currentTimeMillis();
         boolean isIndexingAlreadyStarted = isIndexingInProcess();
-        SiteMapConstructor.indexingRunning = true;
-        SiteMapConstructor.isInterrupted = false;
+        indexingRunning = true;
         List<Site> sitesList = sites.getSites();
         deleteBackslashAtTheEndOfSiteUrl(sitesList);
         if (sitesList.isEmpty())
@@ -75,9 +130,10 @@ public class IndexingServiceImpl implements IndexingService {
         if (isIndexingAlreadyStarted) {
             throw new ServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, IndexingIsInProcess.getValue());
         }
-        deleteSitesRelatedInformation(sitesList.stream().map(Site::getName).collect(Collectors.toList()));
-        fillSitePagesInfo(fillSitesInfo(sitesList));
-        SiteMapConstructor.indexingRunning = false;
+        Set<Integer> resumedSiteIds = new HashSet<>();
+        robotsCache.clear();
+        fillSitePagesInfo(prepareSites(sitesList, resumedSiteIds), resumedSiteIds);
+        indexingRunning = false;
         log.debug("startIndexing - " + (System.currentTimeMillis() - start) + " ms");
     }
 
@@ -91,7 +147,7 @@ public class IndexingServiceImpl implements IndexingService {
 
     private boolean isIndexingInProcess() {
         Optional<List<searchengine.model.Site>> siteListOpt = siteRepository.getSiteByStatus(IndexingStatus.INDEXING);
-        return SiteMapConstructor.indexingRunning && siteListOpt.isPresent() && siteListOpt.get().size() > 0;
+        return indexingRunning && siteListOpt.isPresent() && siteListOpt.get().size() > 0;
     }
 
     private List<searchengine.model.Site> fillSitesInfo(List<Site> sitesList) {
@@ -100,10 +156,10 @@ public class IndexingServiceImpl implements IndexingService {
         for (Site siteData : sitesList) {
             searchengine.model.Site siteModel = new searchengine.model.Site();
             siteModel.setName(siteData.getName());
-            String url = getUrlWithoutWWW(siteData.getUrl());
-            siteModel.setUrl(url);
+            siteModel.setUrl(urlCanonicalizer.getSiteUrl(siteData.getUrl()));
             siteModel.setStatus(IndexingStatus.INDEXING);
             siteModel.setStatusTime(LocalDateTime.now());
+            siteModel.setCrawlStartTime(LocalDateTime.now());
             siteRepository.save(siteModel);
             siteModelList.add(siteModel);
         }
@@ -111,76 +167,143 @@ public class IndexingServiceImpl implements IndexingService {
         return siteModelList;
     }
 
-    String getUrlWithoutWWW(String url) {
-        return url.replace("https://www.", "https://")
-                .replace("http://www.", "http://");
+    private List<searchengine.model.Site> prepareSites(List<Site> sitesList, Set<Integer> resumedSiteIds) {
+        List<searchengine.model.Site> siteModelList = new ArrayList<>();
+        for (Site siteData : sitesList) {
+            Optional<searchengine.model.Site> siteOpt = siteRepository.getSiteByName(siteData.getName());
+            if (siteOpt.isPresent() && isCrawlResumable(siteOpt.get())) {
+                resumedSiteIds.add(siteOpt.get().getId());
+                siteModelList.add(markSiteIndexing(siteOpt.get(), false));
+            } else if (siteOpt.isPresent() && incremental) {
+                frontierRepository.deleteBySiteId(siteOpt.get().getId());
+                siteModelList.add(markSiteIndexing(siteOpt.get(), true));
+            } else if (siteOpt.isPresent()) {
+                siteModelList.add(startNewGeneration(siteOpt.get()));
+            } else {
+                siteModelList.addAll(fillSitesInfo(Collections.singletonList(siteData)));
+            }
+        }
+        return siteModelList;
     }
 
-    void deleteSitesRelatedInformation(List<String> siteNameList) {
-        long start = System.currentTimeMillis();
-        List<searchengine.model.Site> siteList = new ArrayList<>();
-        for (String siteName : siteNameList) {
-            Optional<searchengine.model.Site> siteOpt = siteRepository.getSiteByName(siteName);
-            if (!siteOpt.isPresent()) continue;
-            searchengine.model.Site site = siteOpt.get();
-            siteList.add(site);
-            deleteAllSitePages(site);
-            Optional<List<Lemma>> lemmaListOpt = lemmaRepository.getLemmaBySite(site);
-            if (!lemmaListOpt.isPresent() || lemmaListOpt.get().isEmpty()) continue;
-            lemmaRepository.deleteAll(lemmaListOpt.get());
+    private boolean isCrawlResumable(searchengine.model.Site site) {
+        return resume && site.getStatus() != IndexingStatus.INDEXED
+                && frontierRepository.countBySiteAndStatusNot(site, FrontierStatus.DONE) > 0;
+    }
+
+    private searchengine.model.Site markSiteIndexing(searchengine.model.Site site, boolean newCrawl) {
+        site.setStatus(IndexingStatus.INDEXING);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError(null);
+        if (newCrawl || site.getCrawlStartTime() == null) {
+            site.setCrawlStartTime(LocalDateTime.now());
         }
-        siteRepository.deleteAll(siteList);
-        log.debug("deleteSitesRelatedInformation - " + (System.currentTimeMillis() - start) + " ms");
+        siteRepository.save(site);
+        return site;
     }
 
-    void deleteAllSitePages(searchengine.model.Site site) {
-        long start = System.currentTimeMillis();
-        List<Page> pages = pageRepository.getPageBySiteId(site.getId());
-        for (Page page : pages) {
-            Optional<List<Index>> indexListOpt = indexRepository.getIndexByPageId(page.getId());
-            if (!indexListOpt.isPresent() || indexListOpt.get().isEmpty()) continue;
-            indexRepository.deleteAll(indexListOpt.get());
+    /**
+     * A full reindex of a known site is written into a new generation, search keeps serving the current one
+     * until the crawl completes.
+     */
+    private searchengine.model.Site startNewGeneration(searchengine.model.Site site) {
+        frontierRepository.deleteBySiteId(site.getId());
+        if (site.getBuildingGeneration() != null) {
+            lemmaDictionary.clear(site.getId(), site.getBuildingGeneration());
         }
-        pageRepository.deleteAll(pages);
-        log.debug("deleteAllSitePages - " + (System.currentTimeMillis() - start) + " ms");
+        sitePurger.purgeOtherGenerations(site.getId(), site.getGeneration());
+        site.setBuildingGeneration(site.getGeneration() + 1);
+        return markSiteIndexing(site, true);
     }
 
-    void fillSitePagesInfo(List<searchengine.model.Site> siteList) {
+    void fillSitePagesInfo(List<searchengine.model.Site> siteList, Set<Integer> resumedSiteIds) {
         long start = System.currentTimeMillis();
         List<Node> rootNodes = new ArrayList<>();
         for (searchengine.model.Site site : siteList) {
-            Document doc = domConfiguration.getDocument(site.getUrl());
-            if (doc == null) {
+            boolean resumed = resumedSiteIds.contains(site.getId());
+            SiteCrawlContext context = new SiteCrawlContext(site, domConfiguration, urlCanonicalizer, contentPolicy,
+                    new UrlFingerprintSet(visitedCapacity), robotsCache.getRules(site.getUrl()), resumed || incremental,
+                    detectDuplicates ? new SimHashIndex(maxDuplicateDistance) : null, minDuplicateWords,
+                    trapSettings.isEnabled() ? new TrapDetector(site.getUrl(), trapSettings) : null, getSiteSettings(site));
+            if (resumed) {
+                rootNodes.addAll(getResumedNodes(context));
+                continue;
+            }
+            FetchResult result = domConfiguration.fetch(site.getUrl());
+            if (result == null) {
                 site.setStatus(IndexingStatus.FAILED);
                 site.setLastError(NoConnectionToSite.getValue());
                 siteRepository.save(site);
                 continue;
             }
-            Page rootPage = Page.constructPage("/", site, doc);
-            log.debug("fillSitePagesInfo - " + rootPage);
-            rootNodes.add(new Node(site.getUrl(), rootPage, domConfiguration));
+            context.claim("/");
+            Node rootNode = context.createNode("/", 0, result);
+            log.debug("fillSitePagesInfo - " + rootNode.getPage());
+            rootNodes.add(rootNode);
+            rootNodes.addAll(getSitemapNodes(context));
+        }
+        pipeline = new CrawlPipeline(pipelineSettings, pageRepository, siteRepository, this, frontierCheckpoint,
+                contentStore);
+        try {
+            pipeline.start(rootNodes);
+            pipeline.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error(e.getMessage(), e);
         }
-        pool = new ForkJoinPool();
-        pool.invoke(new SiteMapConstructor(rootNodes, pageRepository, siteRepository, this));
         log.debug("fillSitePagesInfo - " + (System.currentTimeMillis() - start) + " ms");
     }
 
+    private Site getSiteSettings(searchengine.model.Site site) {
+        return sites.getSites().stream().filter(x -> x.getName().equals(site.getName())).findFirst().orElse(null);
+    }
+
+    private List<Node> getSitemapNodes(SiteCrawlContext context) {
+        searchengine.model.Site site = context.getSite();
+        List<Node> nodes = new ArrayList<>();
+        Map<String, Double> urls = sitemapReader.readUrls(site.getUrl(), context.getRobotsRules().getSitemaps());
+        for (Map.Entry<String, Double> url : urls.entrySet()) {
+            String path = context.getPath(url.getKey());
+            if (path == null || !context.claim(path)) continue;
+            Node node = context.createNode(url.getKey(), path, 1);
+            node.setSitemapPriority(url.getValue());
+            nodes.add(node);
+        }
+        log.debug("getSitemapNodes - " + site.getUrl() + " - " + nodes.size() + " pages");
+        return nodes;
+    }
+
+    private List<Node> getResumedNodes(SiteCrawlContext context) {
+        if (context.getDuplicateIndex() != null) {
+            searchengine.model.Site site = context.getSite();
+            for (Object[] row : pageRepository.getPageSimHashes(site, site.getWriteGeneration())) {
+                context.getDuplicateIndex().add((Long) row[1], (String) row[0]);
+            }
+        }
+        List<Node> nodes = new ArrayList<>();
+        frontierCheckpoint.loadFrontier(context.getSite().getId(), (fingerprint, path, depth, status) -> {
+            context.getVisitedUrls().addFingerprint(fingerprint);
+            if (status == FrontierStatus.DONE) return;
+            nodes.add(context.createNode(path, depth));
+        });
+        log.debug("getResumedNodes - " + context.getSite().getUrl() + " - " + nodes.size() + " pages left");
+        return nodes;
+    }
+
     @Override
     public IndexingResponse stopIndexing() {
         try {
             log.debug("stopIndexing started");
-            if (!SiteMapConstructor.indexingRunning)
+            if (!indexingRunning)
                 throw new BadRequestException(HttpStatus.BAD_REQUEST, IndexingIsNotRun.getValue());
-            SiteMapConstructor.isInterrupted = true;
-            if(pool != null) {
-                pool.shutdownNow();
-                if (pool.awaitTermination(5, TimeUnit.MINUTES)) {
+            if(pipeline != null) {
+                if (pipeline.stop(5, TimeUnit.MINUTES)) {
                     setFailedIndexingStatusForSites();
                 } else {
                     throw new ServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, IndexingIsNotStopped.getValue());
                 }
             }
-            SiteMapConstructor.indexingRunning = false;
+            indexingRunning = false;
             log.debug("stopIndexing finished successfully");
             return new IndexingResponse(true);
         } catch (Exception e) {
@@ -211,16 +334,15 @@ public class IndexingServiceImpl implements IndexingService {
     @Override
     public IndexingResponse indexPage(String url) {
         long start = System.currentTimeMillis();
-        final String urlWithoutWWW = getUrlWithoutWWW(url);
         List<Site> sitesList = sites.getSites().stream()
-                .filter(x -> urlWithoutWWW.startsWith(getUrlWithoutWWW(x.getUrl()))).collect(Collectors.toList());
+                .filter(x -> urlCanonicalizer.getPath(x.getUrl(), url) != null).collect(Collectors.toList());
         deleteBackslashAtTheEndOfSiteUrl(sitesList);
         if (sitesList.isEmpty()) {
             throw new BadRequestException(HttpStatus.BAD_REQUEST, PageIsOutOfConfigFile.getValue());
         } else if (sitesList.size() > 1) {
             throw new ServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, SiteIsSeveralTimesUsedInConfig.getValue());
         }
-        String siteUrl = getUrlWithoutWWW(sitesList.iterator().next().getUrl());
+        String siteUrl = urlCanonicalizer.getSiteUrl(sitesList.iterator().next().getUrl());
         Optional<searchengine.model.Site> siteOpt = siteRepository.getSiteByUrl(siteUrl);
         searchengine.model.Site site;
         if (!siteOpt.isPresent()) {
@@ -229,88 +351,204 @@ public class IndexingServiceImpl implements IndexingService {
         } else {
             site = siteOpt.get();
         }
-        String pagePath = urlWithoutWWW.replaceFirst(siteUrl, "");
-        Optional<Page> pageOpt = pageRepository.getPageByPathAndSite(pagePath, site);
+        String pagePath = urlCanonicalizer.getPath(siteUrl, url);
+        Optional<Page> pageOpt = pageRepository.getPageByPathAndSiteAndGeneration(pagePath, site, site.getWriteGeneration());
         if (pageOpt.isPresent()) {
-            savePageLemmasToDB(pageOpt.get());
+            updatePageInDB(pageOpt.get(), url);
         } else {
-            addNewPageToDB(site, pagePath);
+            addNewPageToDB(site, pagePath, url);
         }
+        lemmaDictionary.flush();
         System.out.println("indexPage - " + (System.currentTimeMillis() - start) + " ms");
         return new IndexingResponse(true);
     }
 
-    private void addNewPageToDB(searchengine.model.Site site, String pagePath) {
+    /**
+     * Fetches the page again and rewrites it with the changed part of its index. The stored page is reindexed
+     * as it is when it can not be fetched.
+     */
+    private void updatePageInDB(Page storedPage, String url) {
         long start = System.currentTimeMillis();
-        String urlAndPath = site.getUrl() + pagePath;
-        Document doc = domConfiguration.getDocument(urlAndPath);
-        if (doc != null) {
-            Page page = Page.constructPage(pagePath, site, doc);
+        FetchResult result = domConfiguration.fetch(url);
+        if (result == null || result.isSkipped()) {
+            savePageLemmasToDB(storedPage);
+            return;
+        }
+        Page page = Page.constructPage(storedPage.getPath(), storedPage.getSite(), result, minDuplicateWords);
+        page.setId(storedPage.getId());
+        page.setGeneration(storedPage.getGeneration());
+        Map<String, TokenPositions> lemmas = Page.pageCodeNotValid(page.getCode())
+                ? Collections.emptyMap() : getPageLemmas(page);
+        saveIndexes(Collections.singletonList(page), Collections.singletonList(lemmas), () -> {
             pageRepository.save(page);
-            savePageLemmasToDB(page);
+            contentStore.save(page);
+        });
+        log.debug("updatePageInDB - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void addNewPageToDB(searchengine.model.Site site, String pagePath, String url) {
+        long start = System.currentTimeMillis();
+        FetchResult result = domConfiguration.fetch(url);
+        if (result != null && !result.isSkipped()) {
+            Page page = Page.constructPage(pagePath, site, result, minDuplicateWords);
+            Map<String, TokenPositions> lemmas = Page.pageCodeNotValid(page.getCode())
+                    ? Collections.emptyMap() : getPageLemmas(page);
+            saveIndexes(Collections.singletonList(page), Collections.singletonList(lemmas),
+                    () -> bulkWriter.insertPage(page));
         }
         log.debug("addNewPageToDB - " + (System.currentTimeMillis() - start) + " ms");
     }
 
+    @Override
+    public List<PipelineStageStatistics> getPipelineStatistics() {
+        CrawlPipeline currentPipeline = pipeline;
+        return currentPipeline == null ? Collections.emptyList() : currentPipeline.getStatistics();
+    }
+
+    @Override
+    public WriteBufferStatistics getWriteBufferStatistics() {
+        CrawlPipeline currentPipeline = pipeline;
+        return currentPipeline == null ? null : currentPipeline.getWriteBufferStatistics();
+    }
+
+    @Override
+    public SiteCrawlStatistics getSiteCrawlStatistics(int siteId) {
+        CrawlPipeline currentPipeline = pipeline;
+        return currentPipeline == null ? null : currentPipeline.getSiteStatistics(siteId);
+    }
+
+    @Override
+    public Map<String, TokenPositions> getPageLemmas(Page page) {
+        String textWithoutTags = page.getText() == null ? lemmasFinder.deleteHtmlTags(contentStore.getContent(page))
+                : TextExtractor.getIndexedText(page.getTitle(), page.getText());
+        return lemmasFinder.getTextLemmaPositions(textWithoutTags);
+    }
+
+    @Override
     public void savePageLemmasToDB(Page page) {
+        if (Page.pageCodeNotValid(page.getCode())) return;
+        savePageLemmasToDB(page, getPageLemmas(page));
+    }
+
+    @Override
+    public void savePageLemmasToDB(Page page, Map<String, TokenPositions> lemmas) {
         long start = System.currentTimeMillis();
         if (Page.pageCodeNotValid(page.getCode())) return;
-        deletePreviousPageIndexingInfo(page);
-        searchengine.model.Site site = page.getSite();
-        String textWithoutTags = lemmasFinder.deleteHtmlTags(page.getContent());
-        Map<String, Integer> lemmas = lemmasFinder.getTextRusEngLemmas(textWithoutTags);
-        List<Index> indexList = new ArrayList<>();
-        Lemma lemma;
-        for (String key : lemmas.keySet()) {
-            lemma = fillLemmaInfo(site, key);
-            Index index = new Index();
-            index.setPage(page);
-            index.setLemma(lemma);
-            index.setRank(lemmas.get(key));
-            indexList.add(index);
-        }
-        indexRepository.saveAll(indexList);
+        saveIndexes(Collections.singletonList(page), Collections.singletonList(lemmas), () -> { });
         log.debug("savePageLemmasToDB - " + (System.currentTimeMillis() - start) + " ms - ");
     }
 
-    private synchronized Lemma fillLemmaInfo(searchengine.model.Site site, String word) {
+    /**
+     * Writes a batch of crawled pages with their index rows in one transaction.
+     * Stored pages which became duplicates or now answer with an error come with empty lemmas,
+     * so their index rows are removed.
+     */
+    @Override
+    public void savePagesToDB(List<Node> nodes) {
         long start = System.currentTimeMillis();
-        Lemma lemma;
-        Optional<List<Lemma>> lemmasOpt = lemmaRepository.getLemmaByLemmaAndSite(word, site);
-        if (lemmasOpt.isPresent() && lemmasOpt.get().size() > 0) {
-            if (lemmasOpt.get().size() == 1) {
-                lemma = lemmasOpt.get().iterator().next();
-                lemma.setFrequency(lemma.getFrequency() + 1);
-            } else {
-                throw new ServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, LemmasDoublesFoundAtOneSite.getValue());
+        List<Node> indexedNodes = nodes.stream()
+                .filter(x -> x.getLemmas() != null)
+                .collect(Collectors.toList());
+        List<Page> newPages = new ArrayList<>();
+        try {
+            saveIndexes(indexedNodes.stream().map(Node::getPage).collect(Collectors.toList()),
+                    indexedNodes.stream().map(Node::getLemmas).collect(Collectors.toList()), () -> {
+                        for (Node node : nodes) {
+                            Page page = node.getPage();
+                            if (node.isUnchanged()) {
+                                pageRepository.updatePageValidators(page.getId(), LocalDateTime.now(), page.getEtag(),
+                                        page.getLastModified());
+                            } else if (page.getId() == 0) {
+                                newPages.add(page);
+                            } else {
+                                pageRepository.save(page);
+                                contentStore.save(page);
+                            }
+                        }
+                        bulkWriter.insertPages(newPages);
+                    });
+        } catch (RuntimeException e) {
+            newPages.forEach(x -> x.setId(0));
+            throw e;
+        }
+        log.debug("savePagesToDB - " + nodes.size() + " pages - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Runs {@code pageWrites} and brings index rows of the pages in line with their new lemmas in one transaction.
+     * Only rows of added or removed lemmas and rows with a changed rank are written, and only frequencies
+     * of added or removed lemmas are changed. Lemma positions are kept in one row per page, which is rewritten.
+     * Lemma ids are resolved before the transaction, so that a rollback does not leave ids of rolled back
+     * lemma rows in the dictionary. Frequency changes are queued only after the transaction commits.
+     */
+    private void saveIndexes(List<Page> pages, List<Map<String, TokenPositions>> lemmas, Runnable pageWrites) {
+        List<PageIndexDiff> diffs = new ArrayList<>();
+        List<Map<String, Integer>> lemmaIds = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            PageIndexDiff diff = new PageIndexDiff(page.getId() == 0
+                    ? Collections.emptyList() : indexRepository.getPageIndexes(page.getId()),
+                    TokenPositions.getCounts(lemmas.get(i)));
+            diffs.add(diff);
+            lemmaIds.add(lemmaDictionary.addPage(page.getSite().getId(), page.getGeneration(), diff.getAdded().keySet()));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                pageWrites.run();
+                Map<Integer, Map<Integer, Integer>> pageRanks = new HashMap<>();
+                Map<Integer, Map<String, TokenPositions>> pagePositions = new HashMap<>();
+                for (int i = 0; i < pages.size(); i++) {
+                    PageIndexDiff diff = diffs.get(i);
+                    bulkWriter.deleteIndexes(diff.getRemovedIds());
+                    bulkWriter.updateIndexRanks(diff.getChangedRanks());
+                    pageRanks.put(pages.get(i).getId(), diff.getAddedRanks(lemmaIds.get(i)));
+                    pagePositions.put(pages.get(i).getId(), lemmas.get(i));
+                }
+                bulkWriter.insertIndexes(pageRanks);
+                positionStore.save(pagePositions);
+            });
+        } catch (RuntimeException e) {
+            for (int i = 0; i < pages.size(); i++) {
+                Page page = pages.get(i);
+                lemmaDictionary.releasePage(page.getSite().getId(), page.getGeneration(), diffs.get(i).getAdded().keySet());
             }
-        } else {
-            lemma = new Lemma();
-            lemma.setLemma(word);
-            lemma.setFrequency(1);
-            lemma.setSite(site);
+            throw e;
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            lemmaDictionary.commitPage(page.getSite().getId(), page.getGeneration(), diffs.get(i).getAdded().keySet(),
+                    diffs.get(i).getRemovedLemmas());
+            log.debug("saveIndexes - " + page.getPath() + " - " + diffs.get(i));
         }
-        lemmaRepository.save(lemma);
-        log.debug("fillLemmaInfo - " + (System.currentTimeMillis() - start) + " ms");
-        return lemma;
     }
 
-    private void deletePreviousPageIndexingInfo(Page page) {
+    @Override
+    public void flushLemmas(searchengine.model.Site site) {
+        lemmaDictionary.deleteUnused(site.getId(), site.getWriteGeneration());
+    }
+
+    @Override
+    public void dropGeneration(searchengine.model.Site site, int generation) {
+        lemmaDictionary.clear(site.getId(), generation);
+        sitePurger.purgeLater(site.getId(), generation);
+    }
+
+    @Override
+    public void deleteStalePages(searchengine.model.Site site, LocalDateTime crawlStart) {
         long start = System.currentTimeMillis();
-        Optional<List<Index>> indexListOpt = indexRepository.getIndexByPageId(page.getId());
-        if (!indexListOpt.isPresent()) return;
-        List<Index> indexList = indexListOpt.get();
-        Set<Lemma> lemmasToDelete = new HashSet<>();
-        for (Index index : indexList) {
-            if (index.getLemma().getFrequency() == 1) {
-                lemmasToDelete.add(index.getLemma());
-            } else {
-                index.getLemma().setFrequency(index.getLemma().getFrequency() - 1);
-            }
+        int generation = site.getWriteGeneration();
+        List<Integer> stalePageIds = pageRepository.getPageIdsNotSeenSince(site, generation, crawlStart);
+        sitePurger.deletePages(stalePageIds, lemmas -> lemmaDictionary.removePage(site.getId(), generation, lemmas));
+        log.debug("deleteStalePages - " + stalePageIds.size() + " pages - "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        CrawlPipeline currentPipeline = pipeline;
+        if (currentPipeline != null && indexingRunning && !currentPipeline.stop(1, TimeUnit.MINUTES)) {
+            log.error("shutdown - pipeline is not stopped, buffered pages may be lost");
         }
-        indexRepository.deleteAll(indexList);
-        lemmaRepository.deleteAll(lemmasToDelete);
-        log.debug("deletePreviousPageIndexingInfo - " + (System.currentTimeMillis() - start) + " ms");
     }
 
 }
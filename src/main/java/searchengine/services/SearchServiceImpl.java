@@ -13,17 +13,25 @@ import searchengine.model.Page;
 import searchengine.model.Site;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.utils.LemmasFinder;
+import searchengine.utils.PageContentStore;
+import searchengine.utils.PhraseQuery;
+import searchengine.utils.PositionStore;
+import searchengine.utils.TextExtractor;
+import searchengine.utils.TokenPositions;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -36,7 +44,10 @@ public class SearchServiceImpl implements SearchService {
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
     private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
     private final LemmasFinder lemmasFinder;
+    private final PageContentStore contentStore;
+    private final PositionStore positionStore;
     private final int OFFSET = 60;
     private final int SNIPPET_LENGTH = 250;
     private final double LEMMA_FREQUENCY_COEFFICIENT = 0.8;
@@ -55,10 +66,14 @@ public class SearchServiceImpl implements SearchService {
             return new SearchResponse(true, 0, Collections.emptyList());
         searchInfo = sortLemmasByFrequency(searchInfo);
         List<Page> foundPages = getSearchResultPages(searchInfo);
+        PhraseQuery phraseQuery = PhraseQuery.parse(params.getQuery(), lemmasFinder);
+        if (!phraseQuery.isEmpty()) {
+            foundPages = getPhraseMatchingPages(foundPages, phraseQuery);
+        }
         if (foundPages.isEmpty())
             return new SearchResponse(true, 0, Collections.emptyList());
         Map<Page, Double> pagesRelevance = computePagesRelativeRelevance(foundPages, requestLemmasList);
-        List<SearchData> data = fillResponseDataList(pagesRelevance, requestLemmasList, params);
+        List<SearchData> data = fillResponseDataList(pagesRelevance, requestLemmasList, phraseQuery, params);
         return new SearchResponse(true, pagesRelevance.size(), data);
     }
 
@@ -74,7 +89,7 @@ public class SearchServiceImpl implements SearchService {
         Map<String, LemmaInfo> searchInfo = new HashMap<>();
         Map<String, Integer> requestLemmas = lemmasFinder.getTextRusEngLemmas(params.getQuery());
         for (String lemma : requestLemmas.keySet()) {
-            Optional<List<Lemma>> lemmaListOpt = lemmaRepository.getLemmaByLemma(lemma);
+            Optional<List<Lemma>> lemmaListOpt = lemmaRepository.getActiveLemmaByLemma(lemma);
             if (!lemmaListOpt.isPresent() || lemmaListOpt.get().isEmpty()) continue;
             List<Lemma> lemmaList = lemmaListOpt.get();
             if (!siteName.equals("all")) {
@@ -100,11 +115,11 @@ public class SearchServiceImpl implements SearchService {
         if (siteList.isEmpty()) return Collections.emptyMap();
         long allSearchPagesCount;
         if (site.equals("all")) {
-            allSearchPagesCount = siteList.stream().map(x -> x.getPages().size()).reduce(Integer::sum).get();
+            allSearchPagesCount = siteList.stream().mapToLong(this::getActivePagesCount).sum();
         } else {
             List<Site> filteredSiteList = siteList.stream().filter(x -> x.getUrl().equals(site)).collect(Collectors.toList());
             if (filteredSiteList.isEmpty()) return Collections.emptyMap();
-            allSearchPagesCount = Math.round(filteredSiteList.iterator().next().getPages().size());
+            allSearchPagesCount = getActivePagesCount(filteredSiteList.iterator().next());
         }
         Map<String, LemmaInfo> result = new HashMap<>();
         for (String lemma : lemmas.keySet()) {
@@ -114,6 +129,10 @@ public class SearchServiceImpl implements SearchService {
         return result;
     }
 
+    private long getActivePagesCount(Site site) {
+        return pageRepository.countBySiteAndGeneration(site, site.getGeneration());
+    }
+
     private Map<String, LemmaInfo> sortLemmasByFrequency(Map<String, LemmaInfo> searchInfo) {
         log.debug("sortLemmasByFrequency enter");
         return searchInfo.entrySet().stream()
@@ -181,6 +200,18 @@ public class SearchServiceImpl implements SearchService {
         return foundPages;
     }
 
+    /**
+     * Pages indexed before lemma positions were stored can not be checked and are left out.
+     */
+    private List<Page> getPhraseMatchingPages(List<Page> foundPages, PhraseQuery phraseQuery) {
+        log.debug("getPhraseMatchingPages enter");
+        Map<Integer, Map<String, TokenPositions>> positions = positionStore.load(
+                foundPages.stream().map(Page::getId).collect(Collectors.toList()), phraseQuery.getLemmas());
+        return foundPages.stream()
+                .filter(x -> positions.containsKey(x.getId()) && phraseQuery.match(positions.get(x.getId())) != null)
+                .collect(Collectors.toList());
+    }
+
     private Map<Page, Double> computePagesRelativeRelevance(List<Page> foundPages, List<Lemma> requestLemmas) {
         log.debug("computePagesRelativeRelevance enter");
         Map<Page, Double> pagesRelevance = new LinkedHashMap<>();
@@ -209,7 +240,8 @@ public class SearchServiceImpl implements SearchService {
     }
 
     private List<SearchData> fillResponseDataList(Map<Page, Double> pagesRelevance,
-                                                  List<Lemma> requestLemmas, SearchRequestParams params) {
+                                                  List<Lemma> requestLemmas, PhraseQuery phraseQuery,
+                                                  SearchRequestParams params) {
         log.debug("fillResponseDataList enter");
         List<SearchData> data = new ArrayList<>();
         int index = 0;
@@ -222,7 +254,7 @@ public class SearchServiceImpl implements SearchService {
                 searchData.setSiteName(page.getSite().getName());
                 searchData.setUri(page.getPath());
                 searchData.setTitle(getPageTitle(page, requestLemmas));
-                searchData.setSnippet(getPageSnippet(page, requestLemmas));
+                searchData.setSnippet(getPageSnippet(page, requestLemmas, phraseQuery));
                 searchData.setRelevance(pagesRelevance.get(page));
                 data.add(searchData);
                 System.out.println(index + " - " + page.getPath());
@@ -234,21 +266,74 @@ public class SearchServiceImpl implements SearchService {
 
     private String getPageTitle(Page page, List<Lemma> requestLemmas) {
         log.debug("getPageTitle enter");
+        if (page.getTitle() != null) {
+            return boldLemmasInText(page.getTitle(), requestLemmas);
+        }
+        String content = contentStore.getContent(page);
         Pattern pattern = Pattern.compile("<title>.+</title>");
-        Matcher matcher = pattern.matcher(page.getContent());
+        Matcher matcher = pattern.matcher(content);
         if (matcher.find()) {
-            String title = page.getContent().substring(matcher.start(), matcher.end());
+            String title = content.substring(matcher.start(), matcher.end());
             title = lemmasFinder.deleteHtmlTags(title);
             return boldLemmasInText(title, requestLemmas);
         }
         return "";
     }
 
-    private String getPageSnippet(Page page, List<Lemma> requestLemmas) {
+    /**
+     * Pages indexed before the text column was added fall back to stripping tags from the stored html.
+     */
+    private String getPageText(Page page) {
+        String text = page.getText() != null ? page.getText()
+                : lemmasFinder.deleteHtmlTags(contentStore.getContent(page)).replaceAll("\\s+", " ");
+        return " " + text + " ";
+    }
+
+    /**
+     * Builds the snippet around the stored offsets of the phrases and request lemmas. Pages without stored
+     * positions or text are scanned for the lemmas.
+     */
+    private String getPageSnippet(Page page, List<Lemma> requestLemmas, PhraseQuery phraseQuery) {
         log.debug("getPageSnippet enter");
+        List<String> lemmas = requestLemmas.stream().map(Lemma::getLemma).distinct().collect(Collectors.toList());
+        Set<String> loadedLemmas = new HashSet<>(lemmas);
+        loadedLemmas.addAll(phraseQuery.getLemmas());
+        Map<String, TokenPositions> positions = page.getText() == null ? null
+                : positionStore.load(page.getId(), loadedLemmas);
+        if (positions == null) return getScannedPageSnippet(page, requestLemmas);
+        List<Integer> offsets = new ArrayList<>();
+        List<Integer> phraseOffsets = phraseQuery.isEmpty() ? null : phraseQuery.match(positions);
+        if (phraseOffsets != null) {
+            offsets.addAll(phraseOffsets);
+        }
+        for (String lemma : lemmas) {
+            TokenPositions lemmaPositions = positions.get(lemma);
+            if (lemmaPositions == null) continue;
+            int count = lemmas.size() == 1 ? lemmaPositions.getSize() : 1;
+            for (int i = 0; i < count; i++) {
+                offsets.add(lemmaPositions.getOffset(i));
+            }
+        }
+        String textWithoutTags = getPageText(page);
+        int textOffset = TextExtractor.getTextOffset(page.getTitle());
+        StringBuilder snippet = new StringBuilder();
+        int lastIndex = -SNIPPET_LENGTH;
+        for (int offset : offsets) {
+            if (snippet.length() + 2 * OFFSET >= SNIPPET_LENGTH) break;
+            if (offset < textOffset) continue;
+            int lemmaIndex = offset - textOffset + 1;
+            if (Math.abs(lemmaIndex - lastIndex) < OFFSET) continue;
+            snippet.append(cutPartOfWords(constructSnippet(lemmaIndex, textWithoutTags))).append("... ");
+            lastIndex = lemmaIndex;
+        }
+        if (snippet.length() == 0) return getScannedPageSnippet(page, requestLemmas);
+        return boldLemmasInText(snippet.toString(), requestLemmas);
+    }
+
+    private String getScannedPageSnippet(Page page, List<Lemma> requestLemmas) {
+        log.debug("getScannedPageSnippet enter");
         StringBuilder snippet = new StringBuilder();
-        String textWithoutTags = lemmasFinder.deleteHtmlTags(page.getContent());
-        textWithoutTags = textWithoutTags.replaceAll("\\s+", " ");
+        String textWithoutTags = getPageText(page);
         for (Lemma requestLemma : requestLemmas) {
             Optional<List<Index>> indexListOpt = indexRepository.getIndexByPageIdAndLemmaId(page.getId(), requestLemma.getId());
             if (!indexListOpt.isPresent() || indexListOpt.get().size() == 0) continue;
@@ -6,16 +6,16 @@ import searchengine.dto.statistics.DetailedStatisticsItem;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
-import searchengine.model.Lemma;
 import searchengine.model.Site;
 import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
+import searchengine.utils.HostPolitenessScheduler;
 
 import java.sql.Date;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import static searchengine.model.IndexingStatus.INDEXED;
 
@@ -25,6 +25,9 @@ public class StatisticsServiceImpl implements StatisticsService {
 
     private final SiteRepository siteRepository;
     private final LemmaRepository lemmaRepository;
+    private final PageRepository pageRepository;
+    private final IndexingService indexingService;
+    private final HostPolitenessScheduler politenessScheduler;
 
     @Override
     public StatisticsResponse getStatistics() {
@@ -37,6 +40,8 @@ public class StatisticsServiceImpl implements StatisticsService {
         data.setTotal(total);
         List<DetailedStatisticsItem> detailed = fillDetailedStatisticsItemList(sitesList, total);
         data.setDetailed(detailed);
+        data.setPipeline(indexingService.getPipelineStatistics());
+        data.setWriteBuffer(indexingService.getWriteBufferStatistics());
         response.setStatistics(data);
         response.setResult(true);
         return response;
@@ -48,14 +53,15 @@ public class StatisticsServiceImpl implements StatisticsService {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
             item.setName(site.getName());
             item.setUrl(site.getUrl());
-            int pages = site.getPages().size();
-            Optional<List<Lemma>> lemmaListOpt = lemmaRepository.getLemmaBySite(site);
-            int lemmas = lemmaListOpt.map(List::size).orElse(0);
+            int pages = (int) pageRepository.countBySiteAndGeneration(site, site.getGeneration());
+            int lemmas = (int) lemmaRepository.countBySiteAndGeneration(site, site.getGeneration());
             item.setPages(pages);
             item.setLemmas(lemmas);
             item.setStatus(site.getStatus().toString());
             item.setError(site.getLastError() == null ? "" : site.getLastError());
             item.setStatusTime(Date.from(site.getStatusTime().atZone(ZoneId.systemDefault()).toInstant()).getTime());
+            item.setCrawl(indexingService.getSiteCrawlStatistics(site.getId()));
+            item.setHost(politenessScheduler.getHostStatistics(site.getUrl()));
             total.setPages(total.getPages() + pages);
             total.setLemmas(total.getLemmas() + lemmas);
             detailed.add(item);
@@ -0,0 +1,81 @@
+package searchengine.utils;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of asynchronous operations in flight without blocking the caller:
+ * operations over the limit wait in a queue and are started when running ones complete.
+ */
+public class AsyncLimiter {
+
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    public AsyncLimiter(int limit) {
+        this.limit = limit;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        waiting.add(() -> {
+            CompletableFuture<T> started;
+            try {
+                started = operation.get();
+            } catch (Throwable e) {
+                started = new CompletableFuture<>();
+                started.completeExceptionally(e);
+            }
+            started.whenComplete((value, error) -> {
+                inFlight.decrementAndGet();
+                dispatch();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        dispatch();
+        return result;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Lowering the limit lets running operations finish; raising it starts waiting ones at once.
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+        dispatch();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getWaiting() {
+        return waiting.size();
+    }
+
+    private void dispatch() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= limit) return;
+            if (!inFlight.compareAndSet(current, current + 1)) continue;
+            Runnable next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+            } else {
+                next.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import searchengine.model.Page;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@code page} and {@code index} rows with multi-row INSERT statements, page html goes to {@link PageContentStore}.
+ * Hibernate can not batch inserts of entities with IDENTITY ids and sends one statement per row.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BulkWriter {
+
+    private static final String INDEX_INSERT = "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES ";
+    private static final String INDEX_VALUES = "(?, ?, ?)";
+    private static final String INDEX_DELETE = "DELETE FROM `index` WHERE id IN ";
+    private static final String INDEX_RANK_UPDATE = "UPDATE `index` SET `rank` = ? WHERE id = ?";
+    private static final String PAGE_INSERT = "INSERT INTO page (site_id, generation, path, code, title, text, " +
+            "etag, last_modified, content_hash, last_seen, sim_hash, duplicate_of) VALUES ";
+    private static final String PAGE_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${indexing-settings.writer.indexBatchSize:5000}")
+    private int indexBatchSize;
+
+    @Value("${indexing-settings.writer.pageBatchSize:100}")
+    private int pageBatchSize;
+
+    @Value("${indexing-settings.writer.maxStatementBytes:16777216}")
+    private long maxStatementBytes;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PageContentStore contentStore;
+
+    public void insertIndexes(int pageId, Map<Integer, Integer> ranks) {
+        insertIndexes(Collections.singletonMap(pageId, ranks));
+    }
+
+    /**
+     * Index rows of several pages are written together, {@code indexBatchSize} rows per statement.
+     */
+    public void insertIndexes(Map<Integer, Map<Integer, Integer>> pageRanks) {
+        long start = System.currentTimeMillis();
+        List<Object> args = new ArrayList<>();
+        int rows = 0;
+        int total = 0;
+        for (Map.Entry<Integer, Map<Integer, Integer>> page : pageRanks.entrySet()) {
+            for (Map.Entry<Integer, Integer> rank : page.getValue().entrySet()) {
+                args.add(page.getKey());
+                args.add(rank.getKey());
+                args.add(rank.getValue());
+                total++;
+                if (++rows == indexBatchSize) {
+                    jdbcTemplate.update(getSql(INDEX_INSERT, INDEX_VALUES, rows), args.toArray());
+                    args.clear();
+                    rows = 0;
+                }
+            }
+        }
+        if (rows > 0) {
+            jdbcTemplate.update(getSql(INDEX_INSERT, INDEX_VALUES, rows), args.toArray());
+        }
+        if (total == 0) return;
+        log.debug("insertIndexes - " + total + " rows - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    public void deleteIndexes(List<Integer> ids) {
+        for (int i = 0; i < ids.size(); i += indexBatchSize) {
+            List<Integer> chunk = ids.subList(i, Math.min(ids.size(), i + indexBatchSize));
+            jdbcTemplate.update(INDEX_DELETE + "(" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+                    chunk.toArray());
+        }
+    }
+
+    /**
+     * @param ranks new ranks keyed by index row id
+     */
+    public void updateIndexRanks(Map<Integer, Integer> ranks) {
+        if (ranks.isEmpty()) return;
+        List<Object[]> args = new ArrayList<>();
+        ranks.forEach((id, rank) -> args.add(new Object[]{rank, id}));
+        jdbcTemplate.batchUpdate(INDEX_RANK_UPDATE, args);
+    }
+
+    public void insertPage(Page page) {
+        insertPages(Collections.singletonList(page));
+    }
+
+    /**
+     * Inserts new pages and sets their generated ids. Statements are limited to {@code pageBatchSize} rows
+     * and to {@code maxStatementBytes} of text, so that they fit into max_allowed_packet.
+     */
+    public void insertPages(List<Page> pages) {
+        if (pages.isEmpty()) return;
+        long start = System.currentTimeMillis();
+        List<Page> chunk = new ArrayList<>();
+        long chunkBytes = 0;
+        for (Page page : pages) {
+            long pageBytes = (page.getText() == null ? 0 : page.getText().length()) * 3L;
+            if (!chunk.isEmpty() && (chunk.size() == pageBatchSize || chunkBytes + pageBytes > maxStatementBytes)) {
+                insertPageChunk(chunk);
+                chunk = new ArrayList<>();
+                chunkBytes = 0;
+            }
+            chunk.add(page);
+            chunkBytes += pageBytes;
+        }
+        if (!chunk.isEmpty()) {
+            insertPageChunk(chunk);
+        }
+        log.debug("insertPages - " + pages.size() + " rows - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void insertPageChunk(List<Page> pages) {
+        String sql = getSql(PAGE_INSERT, PAGE_VALUES, pages.size());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            int i = 1;
+            for (Page page : pages) {
+                statement.setInt(i++, page.getSite().getId());
+                statement.setInt(i++, page.getGeneration());
+                statement.setString(i++, page.getPath());
+                statement.setInt(i++, page.getCode());
+                statement.setString(i++, page.getTitle());
+                statement.setString(i++, page.getText());
+                statement.setString(i++, page.getEtag());
+                statement.setString(i++, page.getLastModified());
+                statement.setString(i++, page.getContentHash());
+                statement.setTimestamp(i++, page.getLastSeen() == null ? null : Timestamp.valueOf(page.getLastSeen()));
+                if (page.getSimHash() == null) {
+                    statement.setNull(i++, Types.BIGINT);
+                } else {
+                    statement.setLong(i++, page.getSimHash());
+                }
+                statement.setString(i++, page.getDuplicateOf());
+            }
+            return statement;
+        }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < pages.size(); i++) {
+            pages.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
+        contentStore.save(pages);
+    }
+
+    private String getSql(String insert, String values, int rows) {
+        return insert + String.join(", ", Collections.nCopies(rows, values));
+    }
+
+}
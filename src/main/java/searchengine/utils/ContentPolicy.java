@@ -0,0 +1,98 @@
+package searchengine.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides which responses are worth downloading. Pages must be html and not larger than
+ * {@code dom-settings.content.maxBodyBytes}; robots.txt and sitemaps may be of any type
+ * up to {@code dom-settings.content.maxResourceBytes}.
+ */
+@Component
+public class ContentPolicy {
+
+    private static final int SNIFF_LENGTH = 512;
+
+    @Value("${dom-settings.content.maxBodyBytes:5242880}")
+    private long maxBodyBytes;
+
+    @Value("${dom-settings.content.maxResourceBytes:52428800}")
+    private long maxResourceBytes;
+
+    @Value("${dom-settings.content.allowedTypes:text/html,application/xhtml+xml}")
+    private List<String> allowedTypes;
+
+    @Value("${dom-settings.content.blockedExtensions:jpg,jpeg,png,gif,webp,svg,ico,bmp,tif,tiff,pdf,zip,rar,7z,gz,tgz,tar,mp3,wav,ogg,mp4,avi,mov,wmv,webm,mkv,flv,doc,docx,xls,xlsx,ppt,pptx,odt,exe,msi,dmg,iso,apk,bin,woff,woff2,ttf,eot,css,js}")
+    private List<String> blockedExtensions;
+
+    public long getMaxBodyBytes(FetchMode mode) {
+        return mode == FetchMode.PAGE ? maxBodyBytes : maxResourceBytes;
+    }
+
+    public boolean isBlockedUrl(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) end = query;
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) end = fragment;
+        String path = url.substring(0, end);
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || dot < path.lastIndexOf('/')) return false;
+        return blockedExtensions.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the reason to skip the response judging by its headers, or null if the body should be read.
+     */
+    public String getSkipReason(FetchMode mode, int statusCode, String contentType, long contentLength) {
+        if (contentLength > getMaxBodyBytes(mode)) {
+            return "body is larger than " + getMaxBodyBytes(mode) + " bytes";
+        }
+        if (mode == FetchMode.RESOURCE || statusCode < 200 || statusCode >= 300 || contentType == null) return null;
+        String mimeType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return allowedTypes.contains(mimeType) ? null : "content type " + mimeType;
+    }
+
+    /**
+     * Reads the body up to the size limit. Returns null if the limit is exceeded or the page
+     * has no Content-Type and does not look like html.
+     */
+    public byte[] readBody(FetchMode mode, int statusCode, String contentType, InputStream input) throws IOException {
+        long limit = getMaxBodyBytes(mode);
+        boolean sniff = mode == FetchMode.PAGE && contentType == null && statusCode >= 200 && statusCode < 300;
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            if (body.size() + read > limit) return null;
+            body.write(buffer, 0, read);
+            if (sniff && body.size() >= SNIFF_LENGTH
+                    && body.size() - read < SNIFF_LENGTH && !looksLikeHtml(body.toByteArray())) {
+                return null;
+            }
+        }
+        byte[] bytes = body.toByteArray();
+        if (sniff && bytes.length < SNIFF_LENGTH && !looksLikeHtml(bytes)) {
+            return null;
+        }
+        return bytes;
+    }
+
+    private boolean looksLikeHtml(byte[] body) {
+        int length = Math.min(body.length, SNIFF_LENGTH);
+        for (int i = 0; i < length; i++) {
+            if (body[i] == 0) return false;
+        }
+        String prefix = new String(body, 0, length, StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        return prefix.contains("<html") || prefix.contains("<!doctype html") || prefix.contains("<head")
+                || prefix.contains("<body");
+    }
+
+}
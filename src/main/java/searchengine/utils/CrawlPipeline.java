@@ -0,0 +1,328 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.CrawlExecutor;
+import searchengine.config.PipelineSettings;
+import searchengine.dto.ErrorMessage;
+import searchengine.dto.statistics.PipelineStageStatistics;
+import searchengine.dto.statistics.SiteCrawlStatistics;
+import searchengine.dto.statistics.WriteBufferStatistics;
+import searchengine.model.IndexingStatus;
+import searchengine.model.Page;
+import searchengine.model.Site;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.IndexingService;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Crawls sites through four stages: fetch → parse → lemmatize → persist.
+ * The frontier in front of the fetch stage is unbounded, the queues between the other stages are bounded.
+ * Persisting goes through a write-behind buffer, pages are written in batches by its flusher thread.
+ * A site is indexed when none of its pages is left in the pipeline.
+ */
+@Slf4j
+public class CrawlPipeline {
+
+    private final PageRepository pageRepository;
+    private final SiteRepository siteRepository;
+    private final IndexingService indexingService;
+    private final FrontierCheckpoint frontierCheckpoint;
+    private final PageContentStore contentStore;
+    private final SiteLanes<Node> frontier;
+    private final PipelineStage<Node> fetchStage;
+    private final PipelineStage<Node> parseStage;
+    private final PipelineStage<Node> lemmatizeStage;
+    private final WriteBehindBuffer<Node> writeBuffer;
+    private final Map<Integer, AtomicInteger> pendingPages = new ConcurrentHashMap<>();
+    private final Map<Integer, SiteCrawlContext> contexts = new ConcurrentHashMap<>();
+    private final AtomicInteger sitesInProgress = new AtomicInteger();
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private volatile boolean stopped;
+    private LocalDateTime startTime;
+
+    public CrawlPipeline(PipelineSettings settings, PageRepository pageRepository, SiteRepository siteRepository,
+                         IndexingService indexingService, FrontierCheckpoint frontierCheckpoint,
+                         PageContentStore contentStore) {
+        this.pageRepository = pageRepository;
+        this.siteRepository = siteRepository;
+        this.indexingService = indexingService;
+        this.frontierCheckpoint = frontierCheckpoint;
+        this.contentStore = contentStore;
+        ThreadFactory threadFactory = HostPolitenessScheduler.daemonThreadFactory("pipeline");
+        frontier = new SiteLanes<>(node -> node.getPage().getSite().getId(),
+                node -> node.getContext().getConcurrency(settings.getSiteConcurrency()), Node::getCrawlPriority);
+        fetchStage = createFetchStage(settings, threadFactory);
+        parseStage = new PipelineStage<>("parse", settings.getParseWorkers(), settings.getQueueCapacity(),
+                threadFactory, this::parse, this::complete);
+        lemmatizeStage = new PipelineStage<>("lemmatize", settings.getLemmatizeWorkers(), settings.getQueueCapacity(),
+                threadFactory, this::lemmatize, this::complete);
+        writeBuffer = new WriteBehindBuffer<>("persist", settings.getWriteBufferBytes(), settings.getWriteBatchSize(),
+                settings.getWriteIntervalMs(), threadFactory, this::getBufferedSize, this::persist, this::complete);
+    }
+
+    private PipelineStage<Node> createFetchStage(PipelineSettings settings, ThreadFactory threadFactory) {
+        if (settings.getExecutor() == CrawlExecutor.VIRTUAL) {
+            return new PipelineStage<>("fetch", settings.getMaxVirtualFetches(), frontier, threadFactory,
+                    Executors.newVirtualThreadPerTaskExecutor(), this::fetch, this::complete);
+        }
+        return new PipelineStage<>("fetch", settings.getFetchWorkers(), frontier, threadFactory,
+                new ForkJoinPool(settings.getFetchWorkers()), this::fetch, this::complete);
+    }
+
+    public void start(List<Node> rootNodes) throws InterruptedException {
+        startTime = LocalDateTime.now();
+        stages().forEach(PipelineStage::start);
+        writeBuffer.start();
+        if (rootNodes.isEmpty()) {
+            completion.countDown();
+            return;
+        }
+        sitesInProgress.set((int) rootNodes.stream().map(x -> x.getPage().getSite().getId()).distinct().count());
+        for (Node rootNode : rootNodes) {
+            submit(rootNode);
+        }
+    }
+
+    public void awaitCompletion() throws InterruptedException {
+        completion.await();
+        stages().forEach(PipelineStage::stop);
+        writeBuffer.close();
+    }
+
+    public boolean stop(long timeout, TimeUnit unit) throws InterruptedException {
+        stopped = true;
+        stages().forEach(PipelineStage::stop);
+        completion.countDown();
+        for (PipelineStage<Node> stage : stages().collect(Collectors.toList())) {
+            if (!stage.awaitTermination(timeout, unit)) return false;
+        }
+        writeBuffer.close();
+        if (!writeBuffer.awaitTermination(timeout, unit)) return false;
+        frontierCheckpoint.flush();
+        return true;
+    }
+
+    public List<PipelineStageStatistics> getStatistics() {
+        return stages().map(PipelineStage::getStatistics).collect(Collectors.toList());
+    }
+
+    public WriteBufferStatistics getWriteBufferStatistics() {
+        return writeBuffer.getStatistics();
+    }
+
+    public SiteCrawlStatistics getSiteStatistics(int siteId) {
+        SiteCrawlContext context = contexts.get(siteId);
+        if (context == null) return null;
+        SiteCrawlStatistics statistics = new SiteCrawlStatistics();
+        statistics.setQueued(frontier.getQueued(siteId));
+        statistics.setFetching(frontier.getInFlight(siteId));
+        statistics.setPending(pendingPages.getOrDefault(siteId, new AtomicInteger()).get());
+        statistics.setCrawled(context.getCrawledPages().get());
+        statistics.setAdmitted(context.getAdmittedPages().get());
+        statistics.setSeconds((System.currentTimeMillis() - context.getStartTime()) / 1000);
+        statistics.setTraps(context.getTrapDetector() == null
+                ? Collections.emptyList() : context.getTrapDetector().getStatistics());
+        return statistics;
+    }
+
+    private void submit(Node node) throws InterruptedException {
+        SiteCrawlContext context = node.getContext();
+        if (!context.admit(node.getDepth())) return;
+        int siteId = node.getPage().getSite().getId();
+        if (contexts.putIfAbsent(siteId, context) == null) {
+            context.setInLinkListener(frontier::reprioritize);
+        }
+        context.getQueuedNodes().put(node.getPage().getPath(), node);
+        pendingPages.computeIfAbsent(siteId, x -> new AtomicInteger()).incrementAndGet();
+        frontierCheckpoint.pending(siteId, node.getPage().getPath(), node.getDepth());
+        fetchStage.put(node);
+    }
+
+    private void fetch(Node node) throws InterruptedException {
+        node.getContext().getQueuedNodes().remove(node.getPage().getPath());
+        try {
+            if (node.getContext().isTimeBudgetExhausted()) {
+                complete(node);
+                return;
+            }
+            frontierCheckpoint.inProgress(node.getPage().getSite().getId(), node.getPage().getPath());
+            if (node.getContext().isCheckStoredPage()) {
+                Page page = node.getPage();
+                pageRepository.getPageByPathAndSiteAndGeneration(page.getPath(), page.getSite(),
+                        page.getSite().getWriteGeneration()).ifPresent(storedPage -> {
+                    storedPage.setSite(page.getSite());
+                    node.setStoredPage(storedPage);
+                });
+            }
+            node.fetch();
+            if (node.isStoredPageReused()) {
+                contentStore.getContent(node.getStoredPage());
+            }
+            node.getContext().getCrawledPages().incrementAndGet();
+        } finally {
+            frontier.release(node);
+        }
+        parseStage.put(node);
+    }
+
+    private void parse(Node node) throws InterruptedException {
+        if (node.getFetchResult() != null && node.getFetchResult().isSkipped()) {
+            log.debug("Page is skipped - " + node.getFetchResult().getUrl() + " - " + node.getFetchResult().getSkipReason());
+            complete(node);
+            return;
+        }
+        Page page = node.constructPage();
+        String canonicalUrl = node.getCanonicalUrl();
+        for (Node child : node.getChildren()) {
+            submit(child);
+        }
+        if (canonicalUrl != null) {
+            recordContent(node, false);
+            submitCanonical(node, canonicalUrl);
+            complete(node);
+            return;
+        }
+        boolean duplicate = isDuplicate(node);
+        boolean invalid = Page.pageCodeNotValid(page.getCode());
+        recordContent(node, !duplicate && !invalid);
+        if (node.isUnchanged() && !duplicate) {
+            writeBuffer.put(node);
+        } else if (duplicate || invalid) {
+            if (node.getStoredPage() != null) {
+                node.setLemmas(Collections.emptyMap());
+            }
+            writeBuffer.put(node);
+        } else {
+            lemmatizeStage.put(node);
+        }
+    }
+
+    private void recordContent(Node node, boolean newContent) {
+        TrapDetector trapDetector = node.getContext().getTrapDetector();
+        if (trapDetector != null) {
+            trapDetector.recordContent(node.getPage().getPath(), newContent);
+        }
+    }
+
+    /**
+     * Near duplicates are stored with a reference to the original page and are not lemmatized.
+     */
+    private boolean isDuplicate(Node node) {
+        Page page = node.getPage();
+        SimHashIndex duplicateIndex = node.getContext().getDuplicateIndex();
+        if (duplicateIndex == null || page.getSimHash() == null || Page.pageCodeNotValid(page.getCode())) {
+            return false;
+        }
+        if (node.isUnchanged()) {
+            if (page.getDuplicateOf() == null) {
+                duplicateIndex.add(page.getSimHash(), page.getPath());
+            }
+            return page.getDuplicateOf() != null;
+        }
+        String original = duplicateIndex.findOrAdd(page.getSimHash(), page.getPath());
+        page.setDuplicateOf(original);
+        return original != null;
+    }
+
+    private void submitCanonical(Node node, String canonicalUrl) throws InterruptedException {
+        SiteCrawlContext context = node.getContext();
+        String canonicalPath = context.getPath(canonicalUrl);
+        if (canonicalPath == null || !context.claim(canonicalPath)) return;
+        Node canonicalNode = context.createNode(canonicalUrl, canonicalPath, node.getDepth());
+        canonicalNode.setCanonicalTarget(true);
+        submit(canonicalNode);
+    }
+
+    private void lemmatize(Node node) throws InterruptedException {
+        node.setLemmas(indexingService.getPageLemmas(node.getPage()));
+        writeBuffer.put(node);
+    }
+
+    /**
+     * Rough heap size of a buffered page: its strings and lemma positions.
+     */
+    private long getBufferedSize(Node node) {
+        Page page = node.getPage();
+        long chars = length(page.getContent()) + length(page.getText()) + length(page.getTitle()) + page.getPath().length();
+        long positions = 0;
+        if (node.getLemmas() != null) {
+            for (TokenPositions lemma : node.getLemmas().values()) {
+                positions += 96 + lemma.getSize() * 8L;
+            }
+        }
+        return 256 + chars * 2 + positions;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private void persist(List<Node> nodes) {
+        indexingService.savePagesToDB(nodes);
+        Map<Integer, Site> sites = new HashMap<>();
+        for (Node node : nodes) {
+            sites.putIfAbsent(node.getPage().getSite().getId(), node.getPage().getSite());
+        }
+        for (Site site : sites.values()) {
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        }
+        nodes.forEach(this::complete);
+    }
+
+    private void complete(Node node) {
+        node.setLemmas(null);
+        node.setStoredPage(null);
+        Site site = node.getPage().getSite();
+        if (stopped) return;
+        frontierCheckpoint.done(site.getId(), node.getPage().getPath());
+        if (pendingPages.get(site.getId()).decrementAndGet() > 0) return;
+        ErrorMessage budgetStop = node.getContext().getBudgetStop();
+        if (budgetStop == null) {
+            indexingService.deleteStalePages(site, site.getCrawlStartTime() == null ? startTime : site.getCrawlStartTime());
+        }
+        indexingService.flushLemmas(site);
+        frontierCheckpoint.clear(site.getId());
+        Integer replacedGeneration = site.activateBuildingGeneration();
+        site.setStatus(IndexingStatus.INDEXED);
+        site.setLastError(getCrawlMessage(node.getContext()));
+        site.setStatusTime(LocalDateTime.now());
+        siteRepository.save(site);
+        if (replacedGeneration != null) {
+            indexingService.dropGeneration(site, replacedGeneration);
+        }
+        log.debug("Site is indexed - " + site.getUrl());
+        if (sitesInProgress.decrementAndGet() == 0) {
+            completion.countDown();
+        }
+    }
+
+    private String getCrawlMessage(SiteCrawlContext context) {
+        if (context.getBudgetStop() != null) return context.getBudgetStop().getValue();
+        TrapDetector trapDetector = context.getTrapDetector();
+        if (trapDetector != null && trapDetector.getSuppressedFamilies() > 0) {
+            return ErrorMessage.CrawlerTrapsAreSuppressed.getValue() + trapDetector.getSuppressedFamilies();
+        }
+        return null;
+    }
+
+    private Stream<PipelineStage<Node>> stages() {
+        return Stream.of(fetchStage, parseStage, lemmatizeStage);
+    }
+
+}
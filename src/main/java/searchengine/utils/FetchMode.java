@@ -0,0 +1,6 @@
+package searchengine.utils;
+
+public enum FetchMode {
+    PAGE,
+    RESOURCE
+}
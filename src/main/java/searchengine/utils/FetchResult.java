@@ -0,0 +1,94 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import searchengine.model.Page;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Getter
+public class FetchResult {
+
+    public static final int NOT_MODIFIED = 304;
+
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final String charset;
+    private final byte[] body;
+    private String etag;
+    private String lastModified;
+    private String retryAfter;
+    private Document document;
+    private String contentHash;
+    private String skipReason;
+
+    public FetchResult(String url, int statusCode, String contentType, String charset, byte[] body) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.charset = charset;
+        this.body = body;
+    }
+
+    public FetchResult(String url, int statusCode, String contentType, String charset, byte[] body,
+                       String etag, String lastModified) {
+        this(url, statusCode, contentType, charset, body);
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public FetchResult withRetryAfter(String retryAfter) {
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    public static FetchResult skipped(String url, int statusCode, String contentType, String skipReason) {
+        FetchResult result = new FetchResult(url, statusCode, contentType, null, new byte[0]);
+        result.skipReason = skipReason;
+        return result;
+    }
+
+    public boolean isSkipped() {
+        return skipReason != null;
+    }
+
+    public static FetchResult fromStoredPage(String url, Page page) {
+        return new FetchResult(url, page.getCode(), "text/html", StandardCharsets.UTF_8.name(),
+                page.getContent().getBytes(StandardCharsets.UTF_8), page.getEtag(), page.getLastModified());
+    }
+
+    public Document getDocument() {
+        if (document == null) {
+            try {
+                document = Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return document;
+    }
+
+    public String getContentHash() {
+        if (contentHash == null) {
+            try {
+                contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return contentHash;
+    }
+
+    public Long getSimHash(int minWords) {
+        return SimHash.compute(getDocument(), minWords);
+    }
+
+}
@@ -0,0 +1,129 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.FrontierStatus;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persists the crawl frontier in the {@code frontier} table so that an interrupted crawl can be resumed.
+ * Discovered urls and their status changes are buffered and written in batches.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FrontierCheckpoint {
+
+    public interface EntryHandler {
+        void handle(long fingerprint, String path, int depth, FrontierStatus status);
+    }
+
+    private static final String INSERT_SQL = "INSERT IGNORE INTO frontier (site_id, fingerprint, path, depth, status) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE frontier SET status = ? WHERE site_id = ? AND fingerprint = ?";
+
+    @Value("${indexing-settings.checkpoint.batchSize:500}")
+    private int batchSize;
+
+    @Value("${indexing-settings.checkpoint.intervalMs:5000}")
+    private long intervalMs;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Queue<Object[]> insertQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Object[]> updateQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(HostPolitenessScheduler.daemonThreadFactory("checkpoint"));
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    public void pending(int siteId, String path, int depth) {
+        insertQueue.add(new Object[]{siteId, UrlFingerprintSet.fingerprint(path), path, depth, FrontierStatus.PENDING.name()});
+        flushIfFull(buffered.incrementAndGet());
+    }
+
+    public void inProgress(int siteId, String path) {
+        updateStatus(siteId, path, FrontierStatus.IN_PROGRESS);
+    }
+
+    public void done(int siteId, String path) {
+        updateStatus(siteId, path, FrontierStatus.DONE);
+    }
+
+    public void clear(int siteId) {
+        flush();
+        jdbcTemplate.update("DELETE FROM frontier WHERE site_id = ?", siteId);
+    }
+
+    public void loadFrontier(int siteId, EntryHandler handler) {
+        flush();
+        jdbcTemplate.query("SELECT fingerprint, path, depth, status FROM frontier WHERE site_id = ?",
+                rs -> {
+                    handler.handle(rs.getLong("fingerprint"), rs.getString("path"), rs.getInt("depth"),
+                            FrontierStatus.valueOf(rs.getString("status")));
+                }, siteId);
+    }
+
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        List<Object[]> updates = drain(updateQueue);
+        List<Object[]> inserts = drain(insertQueue);
+        buffered.addAndGet(-(updates.size() + inserts.size()));
+        if (updates.isEmpty() && inserts.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        log.debug("FrontierCheckpoint flush - " + inserts.size() + " new, " + updates.size() + " updated - "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void updateStatus(int siteId, String path, FrontierStatus status) {
+        updateQueue.add(new Object[]{status.name(), siteId, UrlFingerprintSet.fingerprint(path)});
+        flushIfFull(buffered.incrementAndGet());
+    }
+
+    private void flushIfFull(int bufferedEntries) {
+        if (bufferedEntries >= batchSize) {
+            flush();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private List<Object[]> drain(Queue<Object[]> queue) {
+        List<Object[]> result = new ArrayList<>();
+        Object[] item;
+        while ((item = queue.poll()) != null) {
+            result.add(item);
+        }
+        return result;
+    }
+
+}
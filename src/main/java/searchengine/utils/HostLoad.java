@@ -0,0 +1,168 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.HostConcurrencySettings;
+import searchengine.dto.statistics.HostStatistics;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * AIMD control of concurrent requests to one host. While the smoothed latency stays near the best latency
+ * seen for the host, the limit grows by one per window of successful responses; 429, 5xx and timeouts cut it
+ * by {@code decreaseFactor} not more often than once per round trip, and Retry-After pauses the host.
+ */
+@Slf4j
+public class HostLoad {
+
+    private static final long MIN_DECREASE_INTERVAL_MS = 1000;
+    private static final double BASELINE_DRIFT = 0.01;
+
+    @Getter
+    private final String host;
+    private final HostConcurrencySettings settings;
+    private final AsyncLimiter limiter;
+    private final int minConcurrency;
+    private int maxConcurrency;
+    private double latencyMs;
+    private double baselineMs;
+    private double errorRate;
+    private int window;
+    private long lastDecreaseTime;
+    private volatile long backoffUntil;
+
+    public HostLoad(String host, HostConcurrencySettings settings) {
+        this.host = host;
+        this.settings = settings;
+        HostConcurrencySettings.HostLimits limits = settings.getHosts().get(host);
+        this.minConcurrency = Math.max(1, limits != null && limits.getMinConcurrency() != null
+                ? limits.getMinConcurrency() : settings.getMinConcurrency());
+        this.maxConcurrency = Math.max(minConcurrency, limits != null && limits.getMaxConcurrency() != null
+                ? limits.getMaxConcurrency() : settings.getMaxConcurrency());
+        this.limiter = new AsyncLimiter(clamp(settings.getInitialConcurrency()));
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> request) {
+        return limiter.submit(request);
+    }
+
+    public long getBackoffUntil() {
+        return backoffUntil;
+    }
+
+    /**
+     * Hosts asking for a Crawl-delay are fetched one request at a time.
+     */
+    public synchronized void setSequential() {
+        maxConcurrency = minConcurrency;
+        limiter.setLimit(minConcurrency);
+    }
+
+    public synchronized void record(long elapsedMs, FetchResult result, Throwable error) {
+        boolean overloaded = error != null ? isCongestion(error) : isOverloaded(result.getStatusCode());
+        errorRate += settings.getLatencyWeight() * ((overloaded ? 1 : 0) - errorRate);
+        if (overloaded) {
+            if (result != null) {
+                pause(result.getRetryAfter());
+            }
+            decrease();
+        } else if (error == null) {
+            updateLatency(elapsedMs);
+            increase();
+        }
+    }
+
+    public synchronized HostStatistics getStatistics() {
+        HostStatistics statistics = new HostStatistics();
+        statistics.setHost(host);
+        statistics.setConcurrency(limiter.getLimit());
+        statistics.setInFlight(limiter.getInFlight());
+        statistics.setWaiting(limiter.getWaiting());
+        statistics.setLatencyMs(Math.round(latencyMs));
+        statistics.setBaselineLatencyMs(Math.round(baselineMs));
+        statistics.setErrorRate(Math.round(errorRate * 1000) / 1000.0);
+        statistics.setBackoffMs(Math.max(0, backoffUntil - System.currentTimeMillis()));
+        return statistics;
+    }
+
+    private void updateLatency(long elapsedMs) {
+        latencyMs = latencyMs == 0 ? elapsedMs : latencyMs + settings.getLatencyWeight() * (elapsedMs - latencyMs);
+        baselineMs = baselineMs == 0 ? elapsedMs
+                : Math.min(elapsedMs, baselineMs + BASELINE_DRIFT * (latencyMs - baselineMs));
+    }
+
+    private void increase() {
+        int limit = limiter.getLimit();
+        if (++window < limit) return;
+        window = 0;
+        if (latencyMs <= baselineMs * settings.getLatencyTolerance()) {
+            if (limit < maxConcurrency) limiter.setLimit(limit + 1);
+        } else if (limit > minConcurrency) {
+            limiter.setLimit(limit - 1);
+        }
+    }
+
+    private void decrease() {
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseTime < Math.max(MIN_DECREASE_INTERVAL_MS, Math.round(latencyMs))) return;
+        lastDecreaseTime = now;
+        window = 0;
+        int limit = limiter.getLimit();
+        int decreased = clamp((int) (limit * settings.getDecreaseFactor()));
+        if (decreased < limit) {
+            limiter.setLimit(decreased);
+            log.info("Host " + host + " is overloaded, concurrency " + limit + " -> " + decreased);
+        }
+    }
+
+    private void pause(String retryAfter) {
+        long delayMs = parseRetryAfter(retryAfter);
+        if (delayMs <= 0) return;
+        long until = System.currentTimeMillis() + Math.min(delayMs, settings.getMaxRetryAfterMs());
+        if (until > backoffUntil) {
+            backoffUntil = until;
+            log.info("Host " + host + " asked to retry after " + retryAfter);
+        }
+    }
+
+    private int clamp(int limit) {
+        return Math.max(minConcurrency, Math.min(maxConcurrency, limit));
+    }
+
+    static boolean isOverloaded(int statusCode) {
+        return statusCode == 429 || statusCode >= 500 && statusCode != 501 && statusCode != 505;
+    }
+
+    static boolean isCongestion(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof HttpTimeoutException
+                    || cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.isBlank()) return 0;
+        String value = retryAfter.trim();
+        try {
+            return Long.parseLong(value) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return date.toInstant().toEpochMilli() - System.currentTimeMillis();
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+}
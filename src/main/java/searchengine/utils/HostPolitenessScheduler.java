@@ -0,0 +1,149 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.HostConcurrencySettings;
+import searchengine.dto.statistics.HostStatistics;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Releases requests to every host not more often than once per {@code dom-settings.delayMs}.
+ * Requests wait on a timer instead of sleeping in crawler threads, so different hosts are fetched in parallel.
+ * A host may ask for a longer delay with Crawl-delay in its robots.txt.
+ * With {@code dom-settings.adaptive.enabled} the number of concurrent requests to every host is adjusted
+ * by its {@link HostLoad}. The delay of a host may be set below or above {@code delayMs}
+ * with {@code adaptive.hosts.<host>.minDelayMs}, and of all hosts with {@code adaptive.minDelayMs}
+ * when adaptive is enabled.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HostPolitenessScheduler {
+
+    @Value("${dom-settings.delayMs}")
+    private long delayMs;
+
+    private final HostConcurrencySettings adaptiveSettings;
+    private final Map<String, HostLoad> hostLoads = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> nextAllowedTime = new ConcurrentHashMap<>();
+    private final Map<String, Long> hostDelays = new ConcurrentHashMap<>();
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("politeness-timer"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public CompletableFuture<FetchResult> schedule(String url, Supplier<CompletableFuture<FetchResult>> request) {
+        String host = getHost(url);
+        if (!adaptiveSettings.isEnabled()) {
+            return delay(host, 0, request);
+        }
+        HostLoad load = getHostLoad(host);
+        return load.submit(() -> delay(host, load.getBackoffUntil(), () -> {
+            long start = System.currentTimeMillis();
+            return request.get().whenComplete((value, error) ->
+                    load.record(System.currentTimeMillis() - start, value, error));
+        }));
+    }
+
+    public void setHostDelay(String url, long hostDelayMs) {
+        String host = getHost(url);
+        hostDelays.put(host, hostDelayMs);
+        if (adaptiveSettings.isEnabled()) {
+            getHostLoad(host).setSequential();
+        }
+    }
+
+    public HostStatistics getHostStatistics(String url) {
+        HostLoad load = hostLoads.get(getHost(url));
+        return load == null ? null : load.getStatistics();
+    }
+
+    private HostLoad getHostLoad(String host) {
+        return hostLoads.computeIfAbsent(host, x -> new HostLoad(x, adaptiveSettings));
+    }
+
+    private <T> CompletableFuture<T> delay(String host, long notBefore, Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long delay = reserveSlot(host, notBefore);
+        timer.schedule(() -> {
+            try {
+                request.get().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private long reserveSlot(String host, long notBefore) {
+        AtomicLong next = nextAllowedTime.computeIfAbsent(host, x -> new AtomicLong());
+        long hostDelay = getHostDelay(host);
+        long now = System.currentTimeMillis();
+        long start = Math.max(now, notBefore);
+        long slot = Math.max(start, next.getAndUpdate(prev -> Math.max(prev, start) + hostDelay));
+        return slot - now;
+    }
+
+    private long getHostDelay(String host) {
+        long minDelay = delayMs;
+        HostConcurrencySettings.HostLimits limits = adaptiveSettings.getHosts().get(host);
+        if (limits != null && limits.getMinDelayMs() != null) {
+            minDelay = limits.getMinDelayMs();
+        } else if (adaptiveSettings.isEnabled() && adaptiveSettings.getMinDelayMs() != null) {
+            minDelay = adaptiveSettings.getMinDelayMs();
+        }
+        return Math.max(minDelay, hostDelays.getOrDefault(host, 0L));
+    }
+
+    public static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            if (host == null) return "";
+            host = host.toLowerCase(Locale.ROOT);
+            return host.startsWith("www.") ? host.substring(4) : host;
+        } catch (IllegalArgumentException e) {
+            log.warn("Fail to get host - " + url);
+            return "";
+        }
+    }
+
+    public static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
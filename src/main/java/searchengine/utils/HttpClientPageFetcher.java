@@ -0,0 +1,139 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlExecutor;
+import searchengine.config.PipelineSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Non-blocking fetcher on top of {@link HttpClient}: keep-alive connections are pooled by the client,
+ * HTTP/2 is negotiated where the server supports it and bodies are transferred compressed.
+ * In the virtual crawl mode responses are read on virtual threads.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "dom-settings.fetcher", havingValue = "async")
+public class HttpClientPageFetcher implements PageFetcher {
+
+    @Value("${dom-settings.userAgent}")
+    private String userAgent;
+
+    @Value("${dom-settings.referer}")
+    private String referer;
+
+    @Value("${dom-settings.maxInFlight:64}")
+    private int maxInFlight;
+
+    @Value("${dom-settings.timeoutMs:10000}")
+    private long timeoutMs;
+
+    private final HostPolitenessScheduler politenessScheduler;
+    private final ContentPolicy contentPolicy;
+    private final PipelineSettings pipelineSettings;
+    private HttpClient client;
+    private ExecutorService bodyExecutor;
+    private AsyncLimiter limiter;
+
+    @PostConstruct
+    public void init() {
+        bodyExecutor = pipelineSettings.getExecutor() == CrawlExecutor.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newCachedThreadPool(HostPolitenessScheduler.daemonThreadFactory("http-body"));
+        client = HttpClient.newBuilder()
+                .executor(bodyExecutor)
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .build();
+        limiter = new AsyncLimiter(maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bodyExecutor.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String url, Map<String, String> headers, FetchMode mode) {
+        return politenessScheduler.schedule(url, () -> limiter.submit(() -> send(url, headers, mode)));
+    }
+
+    private CompletableFuture<FetchResult> send(String url, Map<String, String> headers, FetchMode mode) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .header("User-Agent", userAgent)
+                .header("Referer", referer)
+                .header("Accept-Encoding", "gzip, deflate");
+        headers.forEach(request::header);
+        return client.sendAsync(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApplyAsync(response -> toFetchResult(response, mode)
+                        .withRetryAfter(response.headers().firstValue("Retry-After").orElse(null)), bodyExecutor);
+    }
+
+    /**
+     * Headers are checked before the body is read; closing the stream of a skipped response cancels the download.
+     */
+    private FetchResult toFetchResult(HttpResponse<InputStream> response, FetchMode mode) {
+        String url = response.uri().toString();
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+        long contentLength = encoding.isEmpty() ? response.headers().firstValueAsLong("Content-Length").orElse(-1) : -1;
+        String skipReason = contentPolicy.getSkipReason(mode, response.statusCode(), contentType, contentLength);
+        try (InputStream body = decode(response.body(), encoding)) {
+            if (skipReason != null) {
+                return FetchResult.skipped(url, response.statusCode(), contentType, skipReason);
+            }
+            byte[] bytes = contentPolicy.readBody(mode, response.statusCode(), contentType, body);
+            if (bytes == null) {
+                return FetchResult.skipped(url, response.statusCode(), contentType, "body is not html or too large");
+            }
+            return new FetchResult(url, response.statusCode(), contentType, getCharset(contentType), bytes,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private InputStream decode(InputStream body, String encoding) throws IOException {
+        if (!encoding.contains("gzip") && !encoding.contains("deflate")) return body;
+        PushbackInputStream stream = new PushbackInputStream(body);
+        int first = stream.read();
+        if (first == -1) return stream;
+        stream.unread(first);
+        return encoding.contains("gzip") ? new GZIPInputStream(stream) : new InflaterInputStream(stream);
+    }
+
+    private String getCharset(String contentType) {
+        if (contentType == null) return null;
+        for (String part : contentType.split(";")) {
+            part = part.trim();
+            if (part.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return part.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        return null;
+    }
+
+}
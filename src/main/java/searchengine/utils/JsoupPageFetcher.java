@@ -0,0 +1,110 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlExecutor;
+import searchengine.config.PipelineSettings;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Blocking fetcher on top of Jsoup. In the forkjoin crawl mode requests run on {@code dom-settings.fetchThreads}
+ * threads; in the virtual mode every request gets its own virtual thread and concurrency is capped
+ * by {@code indexing-settings.pipeline.maxVirtualFetches} of the fetch stage.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "dom-settings.fetcher", havingValue = "jsoup", matchIfMissing = true)
+public class JsoupPageFetcher implements PageFetcher {
+
+    @Value("${dom-settings.userAgent}")
+    private String userAgent;
+
+    @Value("${dom-settings.referer}")
+    private String referer;
+
+    @Value("${dom-settings.timeoutMs:10000}")
+    private long timeoutMs;
+
+    @Value("${dom-settings.fetchThreads:16}")
+    private int fetchThreads;
+
+    private final HostPolitenessScheduler politenessScheduler;
+    private final ContentPolicy contentPolicy;
+    private final PipelineSettings pipelineSettings;
+    private ExecutorService fetchExecutor;
+
+    @PostConstruct
+    public void init() {
+        fetchExecutor = pipelineSettings.getExecutor() == CrawlExecutor.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(fetchThreads, HostPolitenessScheduler.daemonThreadFactory("fetcher"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetch(String url, Map<String, String> headers, FetchMode mode) {
+        return politenessScheduler.schedule(url,
+                () -> CompletableFuture.supplyAsync(() -> load(url, headers, mode), fetchExecutor));
+    }
+
+    private FetchResult load(String url, Map<String, String> headers, FetchMode mode) {
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(userAgent)
+                    .referrer(referer)
+                    .headers(headers)
+                    .ignoreContentType(true)
+                    .ignoreHttpErrors(true)
+                    .timeout((int) timeoutMs)
+                    .maxBodySize(0).execute();
+            return read(response, mode).withRetryAfter(response.header("Retry-After"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FetchResult read(Connection.Response response, FetchMode mode) throws IOException {
+        String finalUrl = response.url().toString();
+        String contentLength = response.header("Content-Length");
+        String skipReason = contentPolicy.getSkipReason(mode, response.statusCode(), response.contentType(),
+                contentLength == null ? -1 : parseLength(contentLength));
+        try (InputStream body = response.bodyStream()) {
+            if (skipReason != null) {
+                return FetchResult.skipped(finalUrl, response.statusCode(), response.contentType(), skipReason);
+            }
+            byte[] bytes = contentPolicy.readBody(mode, response.statusCode(), response.contentType(), body);
+            if (bytes == null) {
+                return FetchResult.skipped(finalUrl, response.statusCode(), response.contentType(),
+                        "body is not html or too large");
+            }
+            return new FetchResult(finalUrl, response.statusCode(), response.contentType(), response.charset(),
+                    bytes, response.header("ETag"), response.header("Last-Modified"));
+        }
+    }
+
+    private long parseLength(String contentLength) {
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory dictionary of the lemmas of every site generation. A lemma id is resolved once and
+ * page frequency changes are accumulated in counters, which are written in batches
+ * with an upsert on the unique (site_id, generation, lemma) key.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+
+    private static final String RESERVE_SQL = "INSERT INTO lemma (site_id, generation, lemma, frequency) " +
+            "VALUES (?, ?, ?, 0) ON DUPLICATE KEY UPDATE id = id";
+    private static final String UPSERT_SQL = "INSERT INTO lemma (site_id, generation, lemma, frequency) " +
+            "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE frequency = frequency + ?";
+    private static final int SELECT_CHUNK = 500;
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    @Value("${indexing-settings.lemmas.batchSize:2000}")
+    private int batchSize;
+
+    @Value("${indexing-settings.lemmas.intervalMs:5000}")
+    private long intervalMs;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Map<String, Entry>> sites = new ConcurrentHashMap<>();
+    private final Queue<Entry> changed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger changedCount = new AtomicInteger();
+    private ScheduledExecutorService flusher;
+
+    private static class Entry {
+        private final int siteId;
+        private final int generation;
+        private final String lemma;
+        private volatile int id;
+        private final AtomicInteger frequency;
+        private final AtomicInteger delta = new AtomicInteger();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private Entry(int siteId, int generation, String lemma, int id, int frequency) {
+            this.siteId = siteId;
+            this.generation = generation;
+            this.lemma = lemma;
+            this.id = id;
+            this.frequency = new AtomicInteger(frequency);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(HostPolitenessScheduler.daemonThreadFactory("lemmas"));
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Counts the page in the in-memory frequency of every lemma, so that the lemmas are not deleted as unused,
+     * and returns the lemma ids. The frequency change is written only after {@link #commitPage}
+     * and is undone with {@link #releasePage} if the index rows of the page are not written.
+     * A retired entry is dropped and the lemma is looked up again in the current dictionary
+     * of the site generation, which is reloaded if the generation was cleared.
+     */
+    public Map<String, Integer> addPage(int siteId, int generation, Collection<String> lemmas) {
+        Map<String, Entry> dictionary = getDictionary(siteId, generation);
+        Map<String, Entry> entries = new HashMap<>();
+        List<Entry> unresolved = new ArrayList<>();
+        for (String lemma : lemmas) {
+            Entry entry = dictionary.computeIfAbsent(lemma, x -> new Entry(siteId, generation, x, 0, 0));
+            while (entry.frequency.incrementAndGet() <= 0) {
+                dictionary.remove(lemma, entry);
+                dictionary = getDictionary(siteId, generation);
+                entry = dictionary.computeIfAbsent(lemma, x -> new Entry(siteId, generation, x, 0, 0));
+            }
+            entries.put(lemma, entry);
+            if (entry.id == 0) unresolved.add(entry);
+        }
+        resolveIds(siteId, generation, unresolved);
+        Map<String, Integer> ids = new HashMap<>();
+        entries.forEach((lemma, entry) -> ids.put(lemma, entry.id));
+        return ids;
+    }
+
+    /**
+     * Queues the frequency changes of a page whose index rows are committed: lemmas counted
+     * by {@link #addPage} are added, removed lemmas are subtracted.
+     */
+    public void commitPage(int siteId, int generation, Collection<String> added, Collection<String> removed) {
+        Map<String, Entry> dictionary = getDictionary(siteId, generation);
+        for (String lemma : added) {
+            Entry entry = dictionary.get(lemma);
+            if (entry == null || entry.frequency.get() <= 0) continue;
+            changeDelta(entry, 1);
+        }
+        removePage(siteId, generation, removed);
+    }
+
+    /**
+     * Takes back the in-memory count of {@link #addPage} when the index rows of the page are rolled back.
+     */
+    public void releasePage(int siteId, int generation, Collection<String> lemmas) {
+        Map<String, Entry> dictionary = getDictionary(siteId, generation);
+        for (String lemma : lemmas) {
+            Entry entry = dictionary.get(lemma);
+            if (entry == null || entry.frequency.get() <= 0) continue;
+            entry.frequency.decrementAndGet();
+        }
+    }
+
+    public void removePage(int siteId, int generation, Collection<String> lemmas) {
+        Map<String, Entry> dictionary = getDictionary(siteId, generation);
+        for (String lemma : lemmas) {
+            Entry entry = dictionary.get(lemma);
+            if (entry == null || entry.frequency.get() <= 0) continue;
+            entry.frequency.decrementAndGet();
+            changeDelta(entry, -1);
+        }
+    }
+
+    public synchronized void flush() {
+        long start = System.currentTimeMillis();
+        List<Object[]> upserts = new ArrayList<>();
+        Entry entry;
+        while ((entry = changed.poll()) != null) {
+            changedCount.decrementAndGet();
+            entry.dirty.set(false);
+            int delta = entry.delta.getAndSet(0);
+            if (delta == 0 || entry.frequency.get() < 0) continue;
+            upserts.add(new Object[]{entry.siteId, entry.generation, entry.lemma, Math.max(delta, 0), delta});
+        }
+        if (upserts.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+        log.debug("LemmaDictionary flush - " + upserts.size() + " lemmas - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Deletes the lemmas of the site generation which are not found on any page anymore.
+     */
+    public synchronized void deleteUnused(int siteId, int generation) {
+        flush();
+        Map<String, Entry> dictionary = sites.get(getKey(siteId, generation));
+        if (dictionary == null) return;
+        List<Object[]> deletes = new ArrayList<>();
+        for (Entry entry : dictionary.values()) {
+            if (entry.id == 0 || !entry.frequency.compareAndSet(0, RETIRED)) continue;
+            dictionary.remove(entry.lemma, entry);
+            deletes.add(new Object[]{entry.id});
+        }
+        if (deletes.isEmpty()) return;
+        jdbcTemplate.batchUpdate("DELETE FROM lemma WHERE id = ? AND frequency <= 0", deletes);
+        log.debug("LemmaDictionary deleteUnused - " + deletes.size() + " lemmas");
+    }
+
+    /**
+     * Forgets the site generation before its lemmas are deleted; changes not written yet are dropped.
+     */
+    public void clear(int siteId, int generation) {
+        Map<String, Entry> dictionary = sites.remove(getKey(siteId, generation));
+        if (dictionary != null) {
+            dictionary.values().forEach(entry -> entry.frequency.set(RETIRED));
+        }
+    }
+
+    private Map<String, Entry> getDictionary(int siteId, int generation) {
+        return sites.computeIfAbsent(getKey(siteId, generation), x -> load(siteId, generation));
+    }
+
+    private static long getKey(int siteId, int generation) {
+        return ((long) siteId << 32) | (generation & 0xFFFFFFFFL);
+    }
+
+    private Map<String, Entry> load(int siteId, int generation) {
+        long start = System.currentTimeMillis();
+        Map<String, Entry> dictionary = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = ? AND generation = ?", rs -> {
+            String lemma = rs.getString("lemma");
+            dictionary.put(lemma, new Entry(siteId, generation, lemma, rs.getInt("id"), rs.getInt("frequency")));
+        }, siteId, generation);
+        log.debug("LemmaDictionary load - " + dictionary.size() + " lemmas - " + (System.currentTimeMillis() - start) + " ms");
+        return dictionary;
+    }
+
+    private void resolveIds(int siteId, int generation, List<Entry> unresolved) {
+        if (unresolved.isEmpty()) return;
+        List<Object[]> reserves = new ArrayList<>();
+        unresolved.forEach(entry -> reserves.add(new Object[]{siteId, generation, entry.lemma}));
+        jdbcTemplate.batchUpdate(RESERVE_SQL, reserves);
+        Map<String, Entry> byLemma = new HashMap<>();
+        unresolved.forEach(entry -> byLemma.put(entry.lemma, entry));
+        List<String> lemmas = new ArrayList<>(byLemma.keySet());
+        for (int from = 0; from < lemmas.size(); from += SELECT_CHUNK) {
+            List<String> chunk = lemmas.subList(from, Math.min(lemmas.size(), from + SELECT_CHUNK));
+            List<Object> args = new ArrayList<>();
+            args.add(siteId);
+            args.add(generation);
+            args.addAll(chunk);
+            jdbcTemplate.query("SELECT id, lemma FROM lemma WHERE site_id = ? AND generation = ? AND lemma IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")", rs -> {
+                Entry entry = byLemma.get(rs.getString("lemma"));
+                if (entry != null) entry.id = rs.getInt("id");
+            }, args.toArray());
+        }
+    }
+
+    private void changeDelta(Entry entry, int delta) {
+        entry.delta.addAndGet(delta);
+        if (entry.dirty.compareAndSet(false, true)) {
+            changed.add(entry);
+            if (changedCount.incrementAndGet() >= batchSize) {
+                flush();
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+}
@@ -9,12 +9,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
 public class LemmasFinder {
     private static final String[] particlesNamesRus = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "МС", "ЧАСТ"};
     private static final String[] particlesNamesEng = new String[]{"PREP", "PART", "CONJ", "ARTICLE"};
+    private static final Pattern WORD = Pattern.compile("([а-яА-ЯёЁ]+)|[a-zA-Z]+");
     private final LuceneMorphology luceneMorphologyRus;
     private final LuceneMorphology luceneMorphologyEng;
 
@@ -33,16 +36,8 @@ public class LemmasFinder {
         if (isEmptyArray(words)) return lemmas;
 
         for (String word : words) {
-            List<String> morphInfos = luceneMorphology.getMorphInfo(word);
-            if (anyMorphInfoBelongToParticle(morphInfos, particlesNames)) {
-                continue;
-            }
-            List<String> baseForms = luceneMorphology.getNormalForms(word);
-            if (baseForms.isEmpty()) {
-                continue;
-            }
-            String normalWord = baseForms.get(0);
-            if (normalWord.length() < 3) {
+            String normalWord = getLemma(word, luceneMorphology, particlesNames);
+            if (normalWord == null) {
                 continue;
             }
             if (lemmas.containsKey(normalWord)) {
@@ -54,6 +49,41 @@ public class LemmasFinder {
         return lemmas;
     }
 
+    /**
+     * Lemmas of the text with the token positions and character offsets of their words. Every russian or english
+     * word counts as a token, including particles and short words that are not indexed, so that positions
+     * of a phrase keep their distances.
+     */
+    public Map<String, TokenPositions> getTextLemmaPositions(String text) {
+        Map<String, TokenPositions> lemmas = new HashMap<>();
+        Matcher matcher = WORD.matcher(text);
+        int position = 0;
+        while (matcher.find()) {
+            String word = matcher.group().toLowerCase(Locale.ROOT);
+            String normalWord = matcher.group(1) != null
+                    ? getLemma(word, luceneMorphologyRus, particlesNamesRus)
+                    : getLemma(word, luceneMorphologyEng, particlesNamesEng);
+            if (normalWord != null) {
+                lemmas.computeIfAbsent(normalWord, x -> new TokenPositions()).add(position, matcher.start());
+            }
+            position++;
+        }
+        return lemmas;
+    }
+
+    private String getLemma(String word, LuceneMorphology luceneMorphology, String[] particlesNames) {
+        List<String> morphInfos = luceneMorphology.getMorphInfo(word);
+        if (anyMorphInfoBelongToParticle(morphInfos, particlesNames)) {
+            return null;
+        }
+        List<String> baseForms = luceneMorphology.getNormalForms(word);
+        if (baseForms.isEmpty()) {
+            return null;
+        }
+        String normalWord = baseForms.get(0);
+        return normalWord.length() < 3 ? null : normalWord;
+    }
+
     public boolean isWordRelatedToBaseForm(String word, String baseForm) {
         word = word.toLowerCase(Locale.ROOT);
         if(word.equals(baseForm)) return true;
@@ -1,78 +1,156 @@
 package searchengine.utils;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-import searchengine.config.DOMConfiguration;
 import searchengine.model.Page;
 
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Data
 public class Node {
 
+    public static final double DEFAULT_SITEMAP_PRIORITY = 0.5;
+    private static final int MAX_COUNTED_IN_LINKS = 999_999;
+
     private String siteUrl;
     private Page page;
-    private DOMConfiguration domConfiguration;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private SiteCrawlContext context;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private FetchResult fetchResult;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<String, TokenPositions> lemmas;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Page storedPage;
+    @EqualsAndHashCode.Exclude
+    private boolean unchanged;
+    @EqualsAndHashCode.Exclude
+    private int depth;
+    @EqualsAndHashCode.Exclude
+    private boolean canonicalTarget;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private final AtomicInteger inLinks = new AtomicInteger(1);
+    @EqualsAndHashCode.Exclude
+    private double sitemapPriority = DEFAULT_SITEMAP_PRIORITY;
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String fetchUrl;
+
+    public Node(SiteCrawlContext context, Page page) {
+        this(context, page, null);
+    }
 
-    public Node(String siteUrl, Page page, DOMConfiguration domConfiguration) {
-        this.siteUrl = siteUrl;
+    public Node(SiteCrawlContext context, Page page, FetchResult fetchResult) {
+        this.siteUrl = context.getSite().getUrl();
         this.page = page;
-        this.domConfiguration = domConfiguration;
+        this.context = context;
+        this.fetchResult = fetchResult;
     }
 
-    public Set<Node> getChildren() {
-        String urlAndPath = this.getSiteUrl() + page.getPath();
-        Document doc = domConfiguration.getDocument(urlAndPath);
-        if (doc == null)
-            return new HashSet<>();
-        Elements references = Objects.requireNonNull(doc).select("a[href]");
-        List<Element> refsWithoutPictures = references.stream()
-                .filter(x -> !x.absUrl("href").toLowerCase(Locale.ROOT).endsWith("jpeg"))
-                .filter(x -> !x.absUrl("href").toLowerCase(Locale.ROOT).endsWith("jpg"))
-                .filter(x -> !x.absUrl("href").toLowerCase(Locale.ROOT).endsWith("png")).collect(Collectors.toList());
-        Set<Node> childNodes = new HashSet<>();
-        for (Element ref : refsWithoutPictures) {
-            if (urlStartsWithSiteUrl(ref.absUrl("href"), urlAndPath) && !ref.absUrl("href").contains("#")) {
-                String url = ref.absUrl("href");
-                Document childDoc = domConfiguration.getDocument(url);
-                url = getNodePath(url);
-                if(url == null) {
-                    log.warn("Fail to get node path - " + urlAndPath);
-                    continue;
-                }
-                childNodes.add(new Node(this.getSiteUrl(), Page.constructPage(url, this.page.getSite(), childDoc), domConfiguration));
-            }
+    public void fetch() {
+        if (fetchResult == null) {
+            fetchResult = context.getDomConfiguration().fetch(getFetchUrl(), getConditionalHeaders());
         }
-        return childNodes;
     }
 
-    private String createUrlWithWWW(String url) {
-        return url.replace("://", "://www.");
+    /**
+     * The page is fetched by the url it was found by, its canonical path only identifies it.
+     * Pages without a known url, such as resumed ones, are fetched by the site url and the path.
+     */
+    public String getFetchUrl() {
+        return fetchUrl != null ? fetchUrl : siteUrl + page.getPath();
+    }
+
+    /**
+     * The stored page stands in for the fetched one when it is not modified or could not be loaded.
+     */
+    public boolean isStoredPageReused() {
+        return storedPage != null && (fetchResult == null || fetchResult.getStatusCode() == FetchResult.NOT_MODIFIED);
     }
 
-    private boolean urlStartsWithSiteUrl(String nodeUrl, String siteUrl) {
-        return nodeUrl.startsWith(siteUrl) || nodeUrl.startsWith(createUrlWithWWW(siteUrl));
+    public Page constructPage() {
+        String url = this.getSiteUrl() + page.getPath();
+        if (isStoredPageReused()) {
+            fetchResult = FetchResult.fromStoredPage(url, storedPage);
+            unchanged = true;
+            page = storedPage;
+            return page;
+        }
+        page = Page.constructPage(page.getPath(), page.getSite(), fetchResult, context.getMinSimHashWords());
+        if (storedPage != null) {
+            page.setId(storedPage.getId());
+            unchanged = storedPage.getCode() == page.getCode()
+                    && Objects.equals(storedPage.getContentHash(), page.getContentHash());
+        }
+        return page;
     }
 
-    private String getNodePath(String url) {
-        String siteUrl = this.page.getSite().getUrl();
-        String replacement = siteUrl.endsWith("/") ? "/" : "";
-        if(url.contains(siteUrl)) {
-            return url.replace(siteUrl, replacement);
-        } else if(url.contains(createUrlWithWWW(siteUrl))) {
-            return url.replace(createUrlWithWWW(siteUrl), replacement);
-        } else {
-            return null;
+    private Map<String, String> getConditionalHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (storedPage == null || Page.pageCodeNotValid(storedPage.getCode())) return headers;
+        if (storedPage.getEtag() != null) {
+            headers.put("If-None-Match", storedPage.getEtag());
+        }
+        if (storedPage.getLastModified() != null) {
+            headers.put("If-Modified-Since", storedPage.getLastModified());
         }
+        return headers;
+    }
+
+    /**
+     * Crawl order within a site, lower first: by depth, then by the number of links to the page
+     * found so far, then by the priority given in the sitemap.
+     */
+    public long getCrawlPriority() {
+        long inLinksRank = MAX_COUNTED_IN_LINKS - Math.min(inLinks.get(), MAX_COUNTED_IN_LINKS);
+        long sitemapRank = 999 - Math.round(Math.max(0, Math.min(sitemapPriority, 1)) * 999);
+        return depth * 1_000_000_000L + inLinksRank * 1_000 + sitemapRank;
+    }
+
+    /**
+     * Returns the url from {@code <link rel="canonical">} if it points to another page of the site.
+     */
+    public String getCanonicalUrl() {
+        if (canonicalTarget || fetchResult == null || Page.pageCodeNotValid(fetchResult.getStatusCode())) return null;
+        Element link = fetchResult.getDocument().selectFirst("link[rel=canonical][href]");
+        if (link == null) return null;
+        String url = link.absUrl("href");
+        String path = context.getPath(url);
+        return path == null || path.equals(page.getPath()) ? null : url;
+    }
+
+    public Set<Node> getChildren() {
+        FetchResult result = fetchResult;
+        fetchResult = null;
+        if (result == null)
+            return new HashSet<>();
+        Set<Node> childNodes = new HashSet<>();
+        for (Element ref : result.getDocument().select("a[href]")) {
+            String url = ref.absUrl("href");
+            String path = context.getPath(url);
+            if (path == null)
+                continue;
+            if (!context.claim(path)) {
+                context.countInLink(path);
+                continue;
+            }
+            childNodes.add(context.createNode(url, path, depth + 1));
+        }
+        return childNodes;
     }
 
 }
@@ -0,0 +1,191 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import searchengine.model.Page;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps page html deflate-compressed in the {@code page_content} table. Pages carry their html only
+ * while they are crawled; search and reindexing load it by page id when they need it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PageContentStore {
+
+    private static final String UPSERT_SQL = "INSERT INTO page_content (page_id, data) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE data = VALUES(data)";
+
+    @Value("${indexing-settings.pageContent.compressionLevel:6}")
+    private int compressionLevel;
+
+    @Value("${indexing-settings.pageContent.migration.enabled:false}")
+    private boolean migrationEnabled;
+
+    @Value("${indexing-settings.pageContent.migration.dropLegacyColumn:false}")
+    private boolean dropLegacyColumn;
+
+    @Value("${indexing-settings.pageContent.migration.chunk:200}")
+    private int migrationChunk;
+
+    private volatile boolean legacyColumn;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void save(Page page) {
+        save(Collections.singletonList(page));
+    }
+
+    public void save(List<Page> pages) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Page page : pages) {
+            if (page.getContent() == null) continue;
+            rows.add(new Object[]{page.getId(), compress(page.getContent())});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * Returns the html of the page, loading it from the store if the page does not carry it.
+     */
+    public String getContent(Page page) {
+        if (page.getContent() == null) {
+            page.setContent(load(page.getId()));
+        }
+        return page.getContent();
+    }
+
+    public String load(int pageId) {
+        List<byte[]> data = jdbcTemplate.query("SELECT data FROM page_content WHERE page_id = ?",
+                (rs, rowNum) -> rs.getBytes("data"), pageId);
+        if (!data.isEmpty()) return decompress(data.get(0));
+        return legacyColumn ? loadLegacy(pageId) : "";
+    }
+
+    private String loadLegacy(int pageId) {
+        List<String> content = jdbcTemplate.query("SELECT content FROM page WHERE id = ?",
+                (rs, rowNum) -> rs.getString("content"), pageId);
+        return content.isEmpty() || content.get(0) == null ? "" : content.get(0);
+    }
+
+    public void delete(Collection<Integer> pageIds) {
+        List<Object[]> rows = new ArrayList<>();
+        pageIds.forEach(id -> rows.add(new Object[]{id}));
+        jdbcTemplate.batchUpdate("DELETE FROM page_content WHERE page_id = ?", rows);
+    }
+
+    /**
+     * Older databases keep html in the {@code page.content} column. At startup the column is made nullable,
+     * so that new pages can be inserted without it, and pages missing from the store fall back to it.
+     * With {@code pageContent.migration.enabled} its html is copied into the store; the column is dropped only
+     * with {@code pageContent.migration.dropLegacyColumn} and only after every page with html in it is found
+     * in the store.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        Integer columns = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'page' AND column_name = 'content'", Integer.class);
+        if (columns == null || columns == 0) return;
+        legacyColumn = true;
+        jdbcTemplate.execute("ALTER TABLE page MODIFY content MEDIUMTEXT NULL");
+        if (!migrationEnabled) {
+            log.info("Page content migration - html is kept in page.content, pageContent.migration is disabled");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long migrated = copyLegacyContent();
+        Long missing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM page p " +
+                "LEFT JOIN page_content c ON c.page_id = p.id WHERE p.content IS NOT NULL AND c.page_id IS NULL",
+                Long.class);
+        log.info("Page content migration - copied " + migrated + " pages, " + missing + " pages are not in the store - "
+                + (System.currentTimeMillis() - start) + " ms");
+        if (!dropLegacyColumn) return;
+        if (missing == null || missing > 0) {
+            log.warn("Page content migration - page.content is not dropped, the copy is not complete");
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE page DROP COLUMN content");
+        legacyColumn = false;
+        log.info("Page content migration - page.content is dropped");
+    }
+
+    /**
+     * Copies html of pages which are not in the store yet, pages stored by the crawler since keep their newer html.
+     */
+    private long copyLegacyContent() {
+        long lastId = 0;
+        long migrated = 0;
+        List<Map<String, Object>> rows;
+        do {
+            rows = jdbcTemplate.queryForList("SELECT p.id, p.content FROM page p " +
+                    "LEFT JOIN page_content c ON c.page_id = p.id " +
+                    "WHERE p.id > ? AND p.content IS NOT NULL AND c.page_id IS NULL ORDER BY p.id LIMIT ?",
+                    lastId, migrationChunk);
+            List<Object[]> contents = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                lastId = ((Number) row.get("id")).longValue();
+                contents.add(new Object[]{lastId, compress((String) row.get("content"))});
+            }
+            if (!contents.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT IGNORE INTO page_content (page_id, data) VALUES (?, ?)", contents);
+                migrated += contents.size();
+                log.info("Page content migration - " + migrated + " pages");
+            }
+        } while (rows.size() == migrationChunk);
+        return migrated;
+    }
+
+    private byte[] compress(String content) {
+        Deflater deflater = new Deflater(compressionLevel);
+        try {
+            deflater.setInput(content.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, content.length() / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                output.write(buffer, 0, length);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Page content is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
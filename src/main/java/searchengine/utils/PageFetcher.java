@@ -0,0 +1,19 @@
+package searchengine.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface PageFetcher {
+
+    default CompletableFuture<FetchResult> fetch(String url) {
+        return fetch(url, Collections.emptyMap());
+    }
+
+    default CompletableFuture<FetchResult> fetch(String url, Map<String, String> headers) {
+        return fetch(url, headers, FetchMode.PAGE);
+    }
+
+    CompletableFuture<FetchResult> fetch(String url, Map<String, String> headers, FetchMode mode);
+
+}
@@ -0,0 +1,62 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Difference between the stored index rows of a page and its new lemma counts: lemmas that are new to the page,
+ * index rows whose rank changed and index rows of lemmas the page no longer contains.
+ */
+@Getter
+public class PageIndexDiff {
+
+    private final Map<String, Integer> added = new HashMap<>();
+    private final Map<Integer, Integer> changedRanks = new HashMap<>();
+    private final List<Integer> removedIds = new ArrayList<>();
+    private final List<String> removedLemmas = new ArrayList<>();
+
+    /**
+     * @param stored rows of {@code (index id, lemma, rank)}
+     */
+    public PageIndexDiff(List<Object[]> stored, Map<String, Integer> lemmas) {
+        Map<String, Object[]> storedRows = new HashMap<>();
+        for (Object[] row : stored) {
+            storedRows.put((String) row[1], row);
+        }
+        lemmas.forEach((lemma, rank) -> {
+            Object[] row = storedRows.remove(lemma);
+            if (row == null) {
+                added.put(lemma, rank);
+            } else if (((Number) row[2]).doubleValue() != rank) {
+                changedRanks.put(((Number) row[0]).intValue(), rank);
+            }
+        });
+        storedRows.forEach((lemma, row) -> {
+            removedIds.add(((Number) row[0]).intValue());
+            removedLemmas.add(lemma);
+        });
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changedRanks.isEmpty() && removedIds.isEmpty();
+    }
+
+    /**
+     * Ranks of the added lemmas keyed by lemma id.
+     */
+    public Map<Integer, Integer> getAddedRanks(Map<String, Integer> lemmaIds) {
+        Map<Integer, Integer> ranks = new HashMap<>();
+        added.forEach((lemma, rank) -> ranks.put(lemmaIds.get(lemma), rank));
+        return ranks;
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + added.size() + ", changed=" + changedRanks.size() + ", removed=" + removedIds.size();
+    }
+
+}
@@ -0,0 +1,91 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quoted phrases of a search query. Every indexed word of a phrase is kept with its token position
+ * relative to the phrase start; a page contains the phrase when its lemmas occur at the same distances.
+ */
+public class PhraseQuery {
+
+    private static final Pattern PHRASE = Pattern.compile("\"([^\"]+)\"");
+
+    private final List<List<Term>> phrases = new ArrayList<>();
+
+    public static PhraseQuery parse(String query, LemmasFinder lemmasFinder) {
+        PhraseQuery phraseQuery = new PhraseQuery();
+        Matcher matcher = PHRASE.matcher(query);
+        while (matcher.find()) {
+            List<Term> phrase = new ArrayList<>();
+            lemmasFinder.getTextLemmaPositions(matcher.group(1)).forEach((lemma, positions) -> {
+                for (int i = 0; i < positions.getSize(); i++) {
+                    phrase.add(new Term(lemma, positions.getPosition(i)));
+                }
+            });
+            if (phrase.size() < 2) continue;
+            phrase.sort(Comparator.comparingInt(x -> x.position));
+            phraseQuery.phrases.add(phrase);
+        }
+        return phraseQuery;
+    }
+
+    public boolean isEmpty() {
+        return phrases.isEmpty();
+    }
+
+    public Set<String> getLemmas() {
+        Set<String> lemmas = new HashSet<>();
+        phrases.forEach(phrase -> phrase.forEach(term -> lemmas.add(term.lemma)));
+        return lemmas;
+    }
+
+    /**
+     * Returns the character offsets of the first occurrence of every phrase or {@code null} if some phrase
+     * does not occur in the page.
+     */
+    public List<Integer> match(Map<String, TokenPositions> pagePositions) {
+        List<Integer> offsets = new ArrayList<>();
+        for (List<Term> phrase : phrases) {
+            int offset = match(phrase, pagePositions);
+            if (offset < 0) return null;
+            offsets.add(offset);
+        }
+        return offsets;
+    }
+
+    private int match(List<Term> phrase, Map<String, TokenPositions> pagePositions) {
+        Term first = phrase.get(0);
+        TokenPositions starts = pagePositions.get(first.lemma);
+        if (starts == null) return -1;
+        for (int i = 0; i < starts.getSize(); i++) {
+            int start = starts.getPosition(i) - first.position;
+            if (matchesAt(phrase, pagePositions, start)) return starts.getOffset(i);
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(List<Term> phrase, Map<String, TokenPositions> pagePositions, int start) {
+        for (int i = 1; i < phrase.size(); i++) {
+            Term term = phrase.get(i);
+            TokenPositions positions = pagePositions.get(term.lemma);
+            if (positions == null || positions.indexOfPosition(start + term.position) < 0) return false;
+        }
+        return true;
+    }
+
+    @RequiredArgsConstructor
+    private static class Term {
+        private final String lemma;
+        private final int position;
+    }
+
+}
@@ -0,0 +1,190 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.statistics.PipelineStageStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One step of the crawl pipeline: a fixed number of workers taking items from the stage queue.
+ * A bounded queue blocks upstream stages when this stage falls behind.
+ * A stage created with an executor has a single dispatcher thread instead, which runs every item
+ * as a separate executor task and caps running items with a semaphore.
+ */
+@Slf4j
+public class PipelineStage<T> {
+
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    @Getter
+    private final String name;
+    private final int workers;
+    private final int queueCapacity;
+    private final BlockingQueue<T> queue;
+    private final Handler<T> handler;
+    private final Consumer<T> onFailure;
+    private final ThreadFactory threadFactory;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicLong processed = new AtomicLong();
+    private long startTime;
+
+    public PipelineStage(String name, int workers, int queueCapacity, ThreadFactory threadFactory,
+                         Handler<T> handler, Consumer<T> onFailure) {
+        this.name = name;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.queue = queueCapacity == Integer.MAX_VALUE
+                ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+        this.threadFactory = threadFactory;
+        this.handler = handler;
+        this.onFailure = onFailure;
+        this.executor = null;
+        this.permits = null;
+    }
+
+    public PipelineStage(String name, int concurrency, int queueCapacity, ThreadFactory threadFactory,
+                         ExecutorService executor, Handler<T> handler, Consumer<T> onFailure) {
+        this(name, concurrency, queueCapacity == Integer.MAX_VALUE
+                ? new LinkedBlockingQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory, executor, handler, onFailure);
+    }
+
+    public PipelineStage(String name, int concurrency, BlockingQueue<T> queue, ThreadFactory threadFactory,
+                         ExecutorService executor, Handler<T> handler, Consumer<T> onFailure) {
+        this.name = name;
+        this.workers = concurrency;
+        this.queue = queue;
+        this.queueCapacity = queue.remainingCapacity() == Integer.MAX_VALUE
+                ? Integer.MAX_VALUE : queue.remainingCapacity() + queue.size();
+        this.threadFactory = threadFactory;
+        this.executor = executor;
+        this.permits = new Semaphore(concurrency);
+        this.handler = handler;
+        this.onFailure = onFailure;
+    }
+
+    public void start() {
+        startTime = System.currentTimeMillis();
+        if (executor != null) {
+            Thread dispatcher = threadFactory.newThread(this::runDispatcher);
+            dispatcher.setName(name + "-dispatcher");
+            threads.add(dispatcher);
+            dispatcher.start();
+            return;
+        }
+        for (int i = 0; i < workers; i++) {
+            Thread thread = threadFactory.newThread(this::runWorker);
+            thread.setName(name + "-" + (i + 1));
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    public void stop() {
+        threads.forEach(Thread::interrupt);
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        queue.clear();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (left <= 0) return false;
+            thread.join(left);
+            if (thread.isAlive()) return false;
+        }
+        if (executor != null) {
+            long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            return left > 0 && executor.awaitTermination(left, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    public PipelineStageStatistics getStatistics() {
+        PipelineStageStatistics statistics = new PipelineStageStatistics();
+        statistics.setName(name);
+        statistics.setWorkers(workers);
+        statistics.setQueueSize(queue.size());
+        statistics.setQueueCapacity(queueCapacity);
+        statistics.setProcessed(processed.get());
+        long duration = System.currentTimeMillis() - startTime;
+        statistics.setItemsPerSecond(duration <= 0 ? 0 : processed.get() * 1000.0 / duration);
+        return statistics;
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            T item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!handle(item)) return;
+        }
+    }
+
+    private void runDispatcher() {
+        while (!Thread.currentThread().isInterrupted()) {
+            T item;
+            try {
+                item = queue.take();
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        handle(item);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                onFailure.accept(item);
+                return;
+            }
+        }
+    }
+
+    private boolean handle(T item) {
+        try {
+            handler.handle(item);
+            processed.incrementAndGet();
+            return true;
+        } catch (InterruptedException e) {
+            onFailure.accept(item);
+            return false;
+        } catch (Exception e) {
+            log.error(name + " - " + e.getMessage(), e);
+            onFailure.accept(item);
+            return true;
+        }
+    }
+
+}
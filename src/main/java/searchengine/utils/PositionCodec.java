@@ -0,0 +1,93 @@
+package searchengine.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes lemma positions of a page into one byte array. Every lemma entry is the lemma itself, the length
+ * of the rest of the entry, the number of occurrences and then a pair of position and offset deltas
+ * per occurrence; all numbers are unsigned varints. The entry length lets the decoder skip lemmas it was not asked for.
+ */
+public final class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(Map<String, TokenPositions> lemmas) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        for (Map.Entry<String, TokenPositions> lemma : lemmas.entrySet()) {
+            TokenPositions positions = lemma.getValue();
+            entry.reset();
+            writeVarInt(entry, positions.getSize());
+            int position = 0;
+            int offset = 0;
+            for (int i = 0; i < positions.getSize(); i++) {
+                writeVarInt(entry, positions.getPosition(i) - position);
+                writeVarInt(entry, positions.getOffset(i) - offset);
+                position = positions.getPosition(i);
+                offset = positions.getOffset(i);
+            }
+            byte[] name = lemma.getKey().getBytes(StandardCharsets.UTF_8);
+            writeVarInt(output, name.length);
+            output.write(name, 0, name.length);
+            byte[] body = entry.toByteArray();
+            writeVarInt(output, body.length);
+            output.write(body, 0, body.length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @param lemmas lemmas to decode, {@code null} decodes all of them
+     */
+    public static Map<String, TokenPositions> decode(byte[] data, Set<String> lemmas) {
+        Map<String, TokenPositions> result = new HashMap<>();
+        int[] cursor = new int[1];
+        while (cursor[0] < data.length) {
+            int nameLength = readVarInt(data, cursor);
+            String name = new String(data, cursor[0], nameLength, StandardCharsets.UTF_8);
+            cursor[0] += nameLength;
+            int entryLength = readVarInt(data, cursor);
+            int entryEnd = cursor[0] + entryLength;
+            if (lemmas == null || lemmas.contains(name)) {
+                int count = readVarInt(data, cursor);
+                TokenPositions positions = new TokenPositions(count);
+                int position = 0;
+                int offset = 0;
+                for (int i = 0; i < count; i++) {
+                    position += readVarInt(data, cursor);
+                    offset += readVarInt(data, cursor);
+                    positions.add(position, offset);
+                }
+                result.put(name, positions);
+            }
+            cursor[0] = entryEnd;
+        }
+        return result;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int readVarInt(byte[] data, int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+}
@@ -0,0 +1,69 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps lemma positions of pages in the {@code page_positions} table, one encoded row per page.
+ * Pages indexed before positions were recorded have no row.
+ */
+@Component
+@RequiredArgsConstructor
+public class PositionStore {
+
+    private static final String UPSERT_SQL = "INSERT INTO page_positions (page_id, data) VALUES (?, ?) " +
+            "ON DUPLICATE KEY UPDATE data = VALUES(data)";
+    private static final int LOAD_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param pagePositions lemma positions keyed by page id
+     */
+    public void save(Map<Integer, Map<String, TokenPositions>> pagePositions) {
+        List<Object[]> rows = new ArrayList<>();
+        pagePositions.forEach((pageId, positions) -> rows.add(new Object[]{pageId, PositionCodec.encode(positions)}));
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * Returns positions of the given lemmas or {@code null} if positions of the page are not stored.
+     */
+    public Map<String, TokenPositions> load(int pageId, Set<String> lemmas) {
+        return load(Collections.singletonList(pageId), lemmas).get(pageId);
+    }
+
+    /**
+     * Returns positions of the given lemmas keyed by page id, pages without stored positions are left out.
+     */
+    public Map<Integer, Map<String, TokenPositions>> load(List<Integer> pageIds, Set<String> lemmas) {
+        Map<Integer, Map<String, TokenPositions>> result = new HashMap<>();
+        for (int i = 0; i < pageIds.size(); i += LOAD_CHUNK) {
+            List<Integer> chunk = pageIds.subList(i, Math.min(pageIds.size(), i + LOAD_CHUNK));
+            jdbcTemplate.query("SELECT page_id, data FROM page_positions WHERE page_id IN (" +
+                            String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")",
+                    rs -> {
+                        result.put(rs.getInt("page_id"), PositionCodec.decode(rs.getBytes("data"), lemmas));
+                    }, chunk.toArray());
+        }
+        return result;
+    }
+
+    public void delete(Collection<Integer> pageIds) {
+        List<Object[]> rows = new ArrayList<>();
+        pageIds.forEach(id -> rows.add(new Object[]{id}));
+        jdbcTemplate.batchUpdate("DELETE FROM page_positions WHERE page_id = ?", rows);
+    }
+
+}
@@ -0,0 +1,76 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.DOMConfiguration;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads robots.txt once per host and passes its Crawl-delay to the politeness scheduler.
+ * A missing or unavailable robots.txt allows everything.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RobotsCache {
+
+    private final DOMConfiguration domConfiguration;
+    private final HostPolitenessScheduler politenessScheduler;
+    private final Map<String, RobotsRules> rulesByHost = new ConcurrentHashMap<>();
+
+    @Value("${dom-settings.userAgent}")
+    private String userAgent;
+
+    @Value("${dom-settings.robots.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dom-settings.robots.maxCrawlDelayMs:10000}")
+    private long maxCrawlDelayMs;
+
+    public RobotsRules getRules(String siteUrl) {
+        if (!enabled) return RobotsRules.allowAll();
+        String robotsUrl = getRobotsUrl(siteUrl);
+        if (robotsUrl == null) return RobotsRules.allowAll();
+        return rulesByHost.computeIfAbsent(robotsUrl, this::load);
+    }
+
+    public void clear() {
+        rulesByHost.clear();
+    }
+
+    private RobotsRules load(String robotsUrl) {
+        long start = System.currentTimeMillis();
+        FetchResult result = domConfiguration.fetchResource(robotsUrl);
+        if (result == null || result.getStatusCode() != 200 || result.getBody() == null) {
+            log.debug("load - " + robotsUrl + " - no robots.txt");
+            return RobotsRules.allowAll();
+        }
+        Charset charset = result.getCharset() == null || !Charset.isSupported(result.getCharset())
+                ? StandardCharsets.UTF_8 : Charset.forName(result.getCharset());
+        RobotsRules rules = RobotsRules.parse(new String(result.getBody(), charset), userAgent);
+        if (rules.getCrawlDelayMs() != null) {
+            politenessScheduler.setHostDelay(robotsUrl, Math.min(rules.getCrawlDelayMs(), maxCrawlDelayMs));
+        }
+        log.debug("load - " + robotsUrl + " - " + (System.currentTimeMillis() - start) + " ms");
+        return rules;
+    }
+
+    private String getRobotsUrl(String siteUrl) {
+        try {
+            URI uri = URI.create(siteUrl);
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) return null;
+            return uri.getScheme() + "://" + uri.getRawAuthority() + "/robots.txt";
+        } catch (IllegalArgumentException e) {
+            log.warn("Fail to get robots.txt url - " + siteUrl);
+            return null;
+        }
+    }
+
+}
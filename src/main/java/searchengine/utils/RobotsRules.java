@@ -0,0 +1,155 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Rules of a robots.txt file that apply to our user agent: Allow/Disallow patterns with
+ * {@code *} and {@code $}, Crawl-delay and the listed sitemaps. The longest matching pattern wins,
+ * Allow wins a tie.
+ */
+public class RobotsRules {
+
+    private static final class Rule {
+        private final Pattern pattern;
+        private final int length;
+        private final boolean allow;
+
+        private Rule(String path, boolean allow) {
+            this.pattern = toPattern(path);
+            this.length = path.length();
+            this.allow = allow;
+        }
+    }
+
+    private static final class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private Long crawlDelayMs;
+    }
+
+    private final List<Rule> rules;
+    @Getter
+    private final Long crawlDelayMs;
+    @Getter
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, Long crawlDelayMs, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return new RobotsRules(Collections.emptyList(), null, Collections.emptyList());
+    }
+
+    public static RobotsRules parse(String text, String userAgent) {
+        List<Group> groups = new ArrayList<>();
+        List<String> sitemaps = new ArrayList<>();
+        Group group = null;
+        boolean groupHasRules = false;
+        for (String line : text.split("\\r?\\n|\\r")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (key) {
+                case "user-agent":
+                    if (group == null || groupHasRules) {
+                        group = new Group();
+                        groups.add(group);
+                        groupHasRules = false;
+                    }
+                    group.agents.add(value.toLowerCase(Locale.ROOT));
+                    break;
+                case "allow":
+                case "disallow":
+                    if (group == null) break;
+                    groupHasRules = true;
+                    if (!value.isEmpty()) group.rules.add(new Rule(value, key.equals("allow")));
+                    break;
+                case "crawl-delay":
+                    if (group == null) break;
+                    groupHasRules = true;
+                    try {
+                        group.crawlDelayMs = Math.round(Double.parseDouble(value) * 1000);
+                    } catch (NumberFormatException ignored) {
+                        // invalid delay is ignored like a missing one
+                    }
+                    break;
+                case "sitemap":
+                    if (!value.isEmpty()) sitemaps.add(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        String agent = selectAgent(groups, userAgent.toLowerCase(Locale.ROOT));
+        List<Rule> rules = new ArrayList<>();
+        Long crawlDelayMs = null;
+        for (Group candidate : groups) {
+            if (agent == null || !candidate.agents.contains(agent)) continue;
+            rules.addAll(candidate.rules);
+            if (candidate.crawlDelayMs != null) crawlDelayMs = candidate.crawlDelayMs;
+        }
+        return new RobotsRules(rules, crawlDelayMs, sitemaps);
+    }
+
+    public boolean isAllowed(String path) {
+        Rule bestRule = null;
+        for (Rule rule : rules) {
+            if (!rule.pattern.matcher(path).lookingAt()) continue;
+            if (bestRule == null || rule.length > bestRule.length || (rule.length == bestRule.length && rule.allow)) {
+                bestRule = rule;
+            }
+        }
+        return bestRule == null || bestRule.allow;
+    }
+
+    public boolean isUrlAllowed(String url) {
+        try {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return isAllowed(uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static String selectAgent(List<Group> groups, String userAgent) {
+        String selected = null;
+        for (Group group : groups) {
+            for (String agent : group.agents) {
+                if (!agent.equals("*") && userAgent.contains(agent)
+                        && (selected == null || selected.equals("*") || agent.length() > selected.length())) {
+                    selected = agent;
+                } else if (agent.equals("*") && selected == null) {
+                    selected = agent;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static Pattern toPattern(String path) {
+        boolean anchored = path.endsWith("$");
+        if (anchored) path = path.substring(0, path.length() - 1);
+        StringBuilder regex = new StringBuilder();
+        for (String part : path.split("\\*", -1)) {
+            if (regex.length() > 0 || path.startsWith("*")) regex.append(".*");
+            regex.append(Pattern.quote(part));
+        }
+        if (anchored) regex.append("$");
+        return Pattern.compile(regex.toString());
+    }
+
+}
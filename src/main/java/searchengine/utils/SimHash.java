@@ -0,0 +1,87 @@
+package searchengine.utils;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 64-bit SimHash of the main text of a page over word shingles. Near-duplicate texts get fingerprints
+ * that differ in a few bits, so similarity is checked with the Hamming distance.
+ * Texts shorter than the given number of words get no fingerprint: empty and very short texts
+ * would all collide with each other.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Set<String> BOILERPLATE_TAGS = Set.of("header", "footer", "nav", "aside",
+            "script", "style", "noscript", "template");
+
+    private SimHash() {
+    }
+
+    public static Long compute(Document document, int minWords) {
+        return compute(getMainText(document), minWords);
+    }
+
+    public static Long compute(String text, int minWords) {
+        List<String> words = new ArrayList<>();
+        Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            words.add(matcher.group());
+        }
+        if (words.isEmpty() || words.size() < minWords) return null;
+        int[] weights = new int[64];
+        int shingleSize = Math.min(SHINGLE_SIZE, Math.max(words.size(), 1));
+        for (int i = 0; i + shingleSize <= words.size(); i++) {
+            long hash = UrlFingerprintSet.fingerprint(String.join(" ", words.subList(i, i + shingleSize)));
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long simHash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) simHash |= 1L << bit;
+        }
+        return simHash;
+    }
+
+    public static int distance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    private static String getMainText(Document document) {
+        StringBuilder text = new StringBuilder();
+        Element body = document.body();
+        if (body == null) return "";
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof Element && BOILERPLATE_TAGS.contains(((Element) node).normalName())) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                if (node instanceof TextNode) {
+                    text.append(((TextNode) node).text()).append(' ');
+                }
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, body);
+        return text.toString();
+    }
+
+}
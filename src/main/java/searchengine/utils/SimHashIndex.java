@@ -0,0 +1,68 @@
+package searchengine.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds pages of one site whose SimHash is within {@code maxDistance} bits of a given one.
+ * Fingerprints are split into {@code maxDistance + 1} bands: two fingerprints that differ in at most
+ * {@code maxDistance} bits agree on at least one whole band, so only pages sharing a band are compared.
+ */
+public class SimHashIndex {
+
+    private static final class Entry {
+        private final long simHash;
+        private final String path;
+
+        private Entry(long simHash, String path) {
+            this.simHash = simHash;
+            this.path = path;
+        }
+    }
+
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+
+    public SimHashIndex(int maxDistance) {
+        this.maxDistance = maxDistance;
+        this.bands = Math.min(maxDistance + 1, 64);
+        this.bandBits = (64 + bands - 1) / bands;
+    }
+
+    /**
+     * Returns the path of an earlier page that is a near duplicate of this one,
+     * otherwise remembers the page and returns null.
+     */
+    public synchronized String findOrAdd(long simHash, String path) {
+        for (int band = 0; band < bands; band++) {
+            List<Entry> bucket = buckets.get(getBucketKey(simHash, band));
+            if (bucket == null) continue;
+            for (Entry entry : bucket) {
+                if (!entry.path.equals(path) && SimHash.distance(entry.simHash, simHash) <= maxDistance) {
+                    return entry.path;
+                }
+            }
+        }
+        add(simHash, path);
+        return null;
+    }
+
+    public synchronized void add(long simHash, String path) {
+        Entry entry = new Entry(simHash, path);
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfAbsent(getBucketKey(simHash, band), x -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    private long getBucketKey(long simHash, int band) {
+        int shift = band * bandBits;
+        long mask = bandBits >= 64 ? -1L : (1L << bandBits) - 1;
+        long bandValue = shift >= 64 ? 0 : (simHash >>> shift) & mask;
+        return bandValue * 64 + band;
+    }
+
+}
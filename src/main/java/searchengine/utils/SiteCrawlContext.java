@@ -0,0 +1,129 @@
+package searchengine.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import searchengine.config.DOMConfiguration;
+import searchengine.dto.ErrorMessage;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * State shared by all nodes of one site during a crawl.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SiteCrawlContext {
+
+    private final Site site;
+    private final DOMConfiguration domConfiguration;
+    private final UrlCanonicalizer urlCanonicalizer;
+    private final ContentPolicy contentPolicy;
+    private final UrlFingerprintSet visitedUrls;
+    private final RobotsRules robotsRules;
+    private final boolean checkStoredPage;
+    private final SimHashIndex duplicateIndex;
+    private final int minSimHashWords;
+    private final TrapDetector trapDetector;
+    private final searchengine.config.Site settings;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicInteger admittedPages = new AtomicInteger();
+    private final AtomicInteger crawledPages = new AtomicInteger();
+    private volatile ErrorMessage budgetStop;
+    private final Map<String, Node> queuedNodes = new ConcurrentHashMap<>();
+    @Setter
+    private volatile Consumer<Node> inLinkListener;
+
+    /**
+     * Returns the canonical path of a url of this site, or null if the url is outside the site,
+     * disallowed or points to a file type that is not crawled.
+     */
+    public String getPath(String url) {
+        if (contentPolicy.isBlockedUrl(url)) return null;
+        String path = urlCanonicalizer.getPath(site.getUrl(), url);
+        if (path == null || !robotsRules.isUrlAllowed(site.getUrl() + path)) return null;
+        return path;
+    }
+
+    /**
+     * Checks the depth limit and counts a page against the page budget of the site.
+     * The first page is always admitted.
+     */
+    public boolean admit(int depth) {
+        Integer maxDepth = settings == null ? null : settings.getMaxDepth();
+        if (maxDepth != null && depth > maxDepth) return false;
+        if (admittedPages.get() > 0 && isTimeBudgetExhausted()) return false;
+        Integer maxPages = settings == null ? null : settings.getMaxPages();
+        if (maxPages == null) {
+            admittedPages.incrementAndGet();
+            return true;
+        }
+        int admitted = admittedPages.getAndUpdate(x -> x < Math.max(maxPages, 1) ? x + 1 : x);
+        if (admitted < Math.max(maxPages, 1)) return true;
+        budgetStop = ErrorMessage.PageBudgetIsReached;
+        return false;
+    }
+
+    public boolean isTimeBudgetExhausted() {
+        Duration maxDuration = settings == null ? null : settings.getMaxDuration();
+        if (maxDuration == null || System.currentTimeMillis() - startTime < maxDuration.toMillis()) return false;
+        budgetStop = ErrorMessage.TimeBudgetIsReached;
+        return true;
+    }
+
+    public int getConcurrency(int defaultConcurrency) {
+        return settings == null || settings.getConcurrency() == null ? defaultConcurrency : settings.getConcurrency();
+    }
+
+    /**
+     * Raises the priority of a queued page that one more link points to. The queue is updated
+     * when the number of links doubles, which keeps re-queuing cheap.
+     */
+    public void countInLink(String path) {
+        Node node = queuedNodes.get(path);
+        if (node == null) return;
+        int inLinks = node.getInLinks().incrementAndGet();
+        Consumer<Node> listener = inLinkListener;
+        if (listener != null && Integer.bitCount(inLinks) == 1) {
+            listener.accept(node);
+        }
+    }
+
+    /**
+     * Marks the path as visited. Returns false if it was visited before or belongs to a crawler trap.
+     */
+    public boolean claim(String path) {
+        if (!visitedUrls.add(path)) return false;
+        return trapDetector == null || !trapDetector.isTrap(path);
+    }
+
+    public Node createNode(String path, int depth) {
+        return createNode(path, depth, null);
+    }
+
+    public Node createNode(String path, int depth, FetchResult fetchResult) {
+        Page page = new Page();
+        page.setSite(site);
+        page.setPath(path);
+        Node node = new Node(this, page, fetchResult);
+        node.setDepth(depth);
+        return node;
+    }
+
+    /**
+     * Creates a node for a found url. It is fetched by this url without the fragment, the path identifies it.
+     */
+    public Node createNode(String url, String path, int depth) {
+        Node node = createNode(path, depth);
+        int fragment = url.indexOf('#');
+        node.setFetchUrl(fragment < 0 ? url : url.substring(0, fragment));
+        return node;
+    }
+
+}
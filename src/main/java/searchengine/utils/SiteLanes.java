@@ -0,0 +1,293 @@
+package searchengine.utils;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Unbounded blocking queue split into lanes, one per site. Items are taken from the lanes in turn,
+ * and a lane gives out no more items than its concurrency until they are {@link #release released}.
+ * Capacity left unused by one site is taken by the others, so a big site cannot starve small ones
+ * and a slow host only holds its own lane.
+ * Within a lane items come out in order of priority, lower values first, and in order of arrival
+ * among equal priorities. When the priority of a queued item changes, {@link #reprioritize} re-queues it;
+ * the old queue entry is left in place and skipped when it comes up.
+ */
+public class SiteLanes<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long priority;
+        private final long sequence;
+        private boolean stale;
+
+        private Entry(T item, long priority, long sequence) {
+            this.item = item;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class Lane<T> {
+        private final PriorityQueue<Entry<T>> entries = new PriorityQueue<>(
+                Comparator.<Entry<T>>comparingLong(x -> x.priority).thenComparingLong(x -> x.sequence));
+        private final Map<T, Entry<T>> queued = new IdentityHashMap<>();
+        private final int concurrency;
+        private int inFlight;
+
+        private Lane(int concurrency) {
+            this.concurrency = Math.max(concurrency, 1);
+        }
+    }
+
+    private final Function<T, Object> laneKey;
+    private final ToIntFunction<T> laneConcurrency;
+    private final ToLongFunction<T> priority;
+    private final Map<Object, Lane<T>> lanes = new HashMap<>();
+    private final List<Lane<T>> order = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int cursor;
+    private int size;
+    private long sequence;
+
+    public SiteLanes(Function<T, Object> laneKey, ToIntFunction<T> laneConcurrency, ToLongFunction<T> priority) {
+        this.laneKey = laneKey;
+        this.laneConcurrency = laneConcurrency;
+        this.priority = priority;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        lock.lock();
+        try {
+            Lane<T> lane = lanes.computeIfAbsent(laneKey.apply(item), x -> {
+                Lane<T> newLane = new Lane<>(laneConcurrency.applyAsInt(item));
+                order.add(newLane);
+                return newLane;
+            });
+            if (lane.queued.containsKey(item)) return true;
+            Entry<T> entry = new Entry<>(item, priority.applyAsLong(item), sequence++);
+            lane.entries.add(entry);
+            lane.queued.put(item, entry);
+            size++;
+            available.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(T item) {
+        offer(item);
+    }
+
+    @Override
+    public boolean offer(T item, long timeout, TimeUnit unit) {
+        return offer(item);
+    }
+
+    @Override
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = pollReady()) == null) {
+                available.await();
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            T item;
+            while ((item = pollReady()) == null) {
+                if (nanos <= 0) return null;
+                nanos = available.awaitNanos(nanos);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T poll() {
+        lock.lock();
+        try {
+            return pollReady();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void reprioritize(T item) {
+        lock.lock();
+        try {
+            Lane<T> lane = lanes.get(laneKey.apply(item));
+            Entry<T> entry = lane == null ? null : lane.queued.get(item);
+            if (entry == null) return;
+            long newPriority = priority.applyAsLong(item);
+            if (newPriority == entry.priority) return;
+            entry.stale = true;
+            Entry<T> newEntry = new Entry<>(item, newPriority, entry.sequence);
+            lane.entries.add(newEntry);
+            lane.queued.put(item, newEntry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the lane slot taken by an item once the item is processed.
+     */
+    public void release(T item) {
+        lock.lock();
+        try {
+            Lane<T> lane = lanes.get(laneKey.apply(item));
+            if (lane != null && lane.inFlight > 0) {
+                lane.inFlight--;
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued(Object key) {
+        lock.lock();
+        try {
+            Lane<T> lane = lanes.get(key);
+            return lane == null ? 0 : lane.queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight(Object key) {
+        lock.lock();
+        try {
+            Lane<T> lane = lanes.get(key);
+            return lane == null ? 0 : lane.inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T peek() {
+        lock.lock();
+        try {
+            for (Lane<T> lane : order) {
+                Entry<T> entry = lane.entries.stream().filter(x -> !x.stale)
+                        .min(lane.entries.comparator()).orElse(null);
+                if (entry != null) return entry.item;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            order.forEach(lane -> {
+                lane.entries.clear();
+                lane.queued.clear();
+            });
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        lock.lock();
+        try {
+            List<T> snapshot = new ArrayList<>(size);
+            order.forEach(lane -> snapshot.addAll(lane.queued.keySet()));
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            T item;
+            while (drained < maxElements && (item = pollReady()) != null) {
+                collection.add(item);
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T pollReady() {
+        int lanesCount = order.size();
+        for (int i = 0; i < lanesCount; i++) {
+            Lane<T> lane = order.get((cursor + i) % lanesCount);
+            if (lane.queued.isEmpty() || lane.inFlight >= lane.concurrency) continue;
+            Entry<T> entry = lane.entries.poll();
+            while (entry.stale) {
+                entry = lane.entries.poll();
+            }
+            lane.queued.remove(entry.item);
+            cursor = (cursor + i + 1) % lanesCount;
+            lane.inFlight++;
+            size--;
+            return entry.item;
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,140 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Deletes a generation of a site with set-based statements by {@code site_id}, without loading entities.
+ * Pages and their index rows are deleted in ranges of page ids and lemmas in chunks of rows,
+ * so every statement is a short transaction; progress is logged after every chunk.
+ * Replaced generations are deleted in the background after {@code indexing-settings.purge.delayMs},
+ * so that searches started before the switch can finish.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitePurger {
+
+    @Value("${indexing-settings.purge.pageChunk:500}")
+    private int pageChunk;
+
+    @Value("${indexing-settings.purge.rowChunk:50000}")
+    private int rowChunk;
+
+    @Value("${indexing-settings.purge.delayMs:60000}")
+    private long delayMs;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void init() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(HostPolitenessScheduler.daemonThreadFactory("purge"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    public void purgeLater(int siteId, int generation) {
+        cleaner.schedule(() -> {
+            try {
+                purge(siteId, generation);
+            } catch (Exception e) {
+                log.error("Fail to purge site " + siteId + " generation " + generation + " - " + e.getMessage(), e);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes all generations of the site except the given one, e.g. an abandoned build
+     * or a generation whose background cleanup was interrupted by a restart.
+     */
+    public void purgeOtherGenerations(int siteId, int keptGeneration) {
+        List<Integer> generations = jdbcTemplate.queryForList(
+                "SELECT generation FROM lemma WHERE site_id = ? AND generation <> ? " +
+                        "UNION SELECT generation FROM page WHERE site_id = ? AND generation <> ?",
+                Integer.class, siteId, keptGeneration, siteId, keptGeneration);
+        generations.forEach(generation -> purge(siteId, generation));
+    }
+
+    /**
+     * Deletes the given pages with their index rows, content and positions, {@code pageChunk} pages
+     * per transaction. Lemmas of the deleted index rows, one per row, are passed to {@code onDeleted}
+     * after every commit, so that lemma frequencies are decreased only for rows that are gone.
+     */
+    public void deletePages(List<Integer> pageIds, Consumer<List<String>> onDeleted) {
+        for (int from = 0; from < pageIds.size(); from += pageChunk) {
+            List<Integer> chunk = pageIds.subList(from, Math.min(pageIds.size(), from + pageChunk));
+            String ids = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            Object[] args = chunk.toArray();
+            List<String> lemmas = transactionTemplate.execute(status -> {
+                List<String> deleted = jdbcTemplate.queryForList("SELECT l.lemma FROM `index` i " +
+                        "JOIN lemma l ON l.id = i.lemma_id WHERE i.page_id IN (" + ids + ")", String.class, args);
+                jdbcTemplate.update("DELETE FROM `index` WHERE page_id IN (" + ids + ")", args);
+                jdbcTemplate.update("DELETE FROM page_content WHERE page_id IN (" + ids + ")", args);
+                jdbcTemplate.update("DELETE FROM page_positions WHERE page_id IN (" + ids + ")", args);
+                jdbcTemplate.update("DELETE FROM page WHERE id IN (" + ids + ")", args);
+                return deleted;
+            });
+            if (lemmas != null && !lemmas.isEmpty()) {
+                onDeleted.accept(lemmas);
+            }
+        }
+    }
+
+    public synchronized void purge(int siteId, int generation) {
+        long start = System.currentTimeMillis();
+        String name = "site " + siteId + " generation " + generation;
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id, " +
+                "COUNT(*) AS pages FROM page WHERE site_id = ? AND generation = ?", siteId, generation);
+        long pages = ((Number) range.get("pages")).longValue();
+        long indexRows = 0;
+        long deletedPages = 0;
+        if (pages > 0) {
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            for (long from = minId; from <= maxId; from += pageChunk) {
+                long to = Math.min(maxId, from + pageChunk - 1);
+                indexRows += jdbcTemplate.update("DELETE FROM `index` WHERE page_id BETWEEN ? AND ? " +
+                        "AND page_id IN (SELECT id FROM page WHERE site_id = ? AND generation = ?)",
+                        from, to, siteId, generation);
+                jdbcTemplate.update("DELETE FROM page_content WHERE page_id BETWEEN ? AND ? " +
+                        "AND page_id IN (SELECT id FROM page WHERE site_id = ? AND generation = ?)",
+                        from, to, siteId, generation);
+                jdbcTemplate.update("DELETE FROM page_positions WHERE page_id BETWEEN ? AND ? " +
+                        "AND page_id IN (SELECT id FROM page WHERE site_id = ? AND generation = ?)",
+                        from, to, siteId, generation);
+                deletedPages += jdbcTemplate.update("DELETE FROM page WHERE site_id = ? AND generation = ? " +
+                        "AND id BETWEEN ? AND ?", siteId, generation, from, to);
+                log.info("Purge " + name + " - pages " + deletedPages + "/" + pages + ", index rows " + indexRows);
+            }
+        }
+        long lemmas = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM lemma WHERE site_id = ? AND generation = ? LIMIT ?",
+                    siteId, generation, rowChunk);
+            lemmas += deleted;
+        } while (deleted == rowChunk);
+        log.info("Purge " + name + " - done, " + deletedPages + " pages, " + indexRows + " index rows, "
+                + lemmas + " lemmas - " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+}
@@ -0,0 +1,111 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import searchengine.config.DOMConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Collects page urls with their priorities from sitemap.xml files.
+ * Sitemap indexes are followed and gzipped sitemaps are unpacked; the unpacked size is limited
+ * by {@code dom-settings.content.maxResourceBytes} as the downloaded one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SitemapReader {
+
+    private final DOMConfiguration domConfiguration;
+    private final ContentPolicy contentPolicy;
+
+    @Value("${indexing-settings.sitemap.enabled:true}")
+    private boolean enabled;
+
+    @Value("${indexing-settings.sitemap.maxSitemaps:100}")
+    private int maxSitemaps;
+
+    @Value("${indexing-settings.sitemap.maxUrls:50000}")
+    private int maxUrls;
+
+    public Map<String, Double> readUrls(String siteUrl, List<String> sitemapUrls) {
+        if (!enabled) return new LinkedHashMap<>();
+        long start = System.currentTimeMillis();
+        Deque<String> sitemapsToRead = new ArrayDeque<>(sitemapUrls);
+        if (sitemapsToRead.isEmpty()) {
+            sitemapsToRead.add(siteUrl + "/sitemap.xml");
+        }
+        Set<String> readSitemaps = new HashSet<>();
+        Map<String, Double> urls = new LinkedHashMap<>();
+        while (!sitemapsToRead.isEmpty() && readSitemaps.size() < maxSitemaps && urls.size() < maxUrls) {
+            String sitemapUrl = sitemapsToRead.poll();
+            if (!readSitemaps.add(sitemapUrl)) continue;
+            Document sitemap = load(sitemapUrl);
+            if (sitemap == null) continue;
+            for (Element loc : sitemap.select("sitemapindex > sitemap > loc")) {
+                sitemapsToRead.add(loc.text().trim());
+            }
+            for (Element url : sitemap.select("urlset > url")) {
+                Element loc = url.selectFirst("> loc");
+                if (loc == null) continue;
+                if (urls.size() >= maxUrls) break;
+                urls.put(loc.text().trim(), getPriority(url.selectFirst("> priority")));
+            }
+        }
+        log.debug("readUrls - " + siteUrl + " - " + urls.size() + " urls from " + readSitemaps.size()
+                + " sitemaps - " + (System.currentTimeMillis() - start) + " ms");
+        return urls;
+    }
+
+    private double getPriority(Element priority) {
+        if (priority == null) return Node.DEFAULT_SITEMAP_PRIORITY;
+        try {
+            return Double.parseDouble(priority.text().trim());
+        } catch (NumberFormatException e) {
+            return Node.DEFAULT_SITEMAP_PRIORITY;
+        }
+    }
+
+    private Document load(String sitemapUrl) {
+        FetchResult result = domConfiguration.fetchResource(sitemapUrl);
+        if (result == null || result.getStatusCode() != 200 || result.getBody() == null) return null;
+        byte[] body = result.getBody();
+        try {
+            if (isGzipped(body)) {
+                try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    body = contentPolicy.readBody(FetchMode.RESOURCE, result.getStatusCode(),
+                            result.getContentType(), input);
+                }
+                if (body == null) {
+                    log.warn("Fail to read sitemap - " + sitemapUrl + " - unpacked sitemap is too large");
+                    return null;
+                }
+            }
+            return Jsoup.parse(new ByteArrayInputStream(body), null, sitemapUrl, Parser.xmlParser());
+        } catch (IOException e) {
+            log.warn("Fail to read sitemap - " + sitemapUrl + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isGzipped(byte[] body) {
+        return body.length > 1 && (body[0] & 0xff) == 0x1f && (body[1] & 0xff) == 0x8b;
+    }
+
+}
@@ -0,0 +1,74 @@
+package searchengine.utils;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the title and the visible text of a parsed page once at index time, so that search does not
+ * strip tags from the stored html for every hit. Skips the same parts that are cut by
+ * {@link LemmasFinder#deleteHtmlTags}: scripts, styles, text areas and menu items consisting of a single link.
+ */
+public final class TextExtractor {
+
+    private static final Set<String> SKIPPED_TAGS = Set.of("script", "style", "noscript", "textarea", "template");
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s\\u00A0]+");
+
+    private TextExtractor() {
+    }
+
+    /**
+     * Text that is lemmatized for a page, offsets of lemma positions point into it.
+     */
+    public static String getIndexedText(String title, String text) {
+        return (title == null ? "" : title) + " " + text;
+    }
+
+    /**
+     * Offset of the page text in {@link #getIndexedText}.
+     */
+    public static int getTextOffset(String title) {
+        return (title == null ? 0 : title.length()) + 1;
+    }
+
+    public static String getTitle(Document document) {
+        return WHITESPACE.matcher(document.title()).replaceAll(" ").trim();
+    }
+
+    public static String getText(Document document) {
+        StringBuilder text = new StringBuilder();
+        Element body = document.body();
+        if (body == null) return "";
+        NodeTraversor.filter(new NodeFilter() {
+            @Override
+            public FilterResult head(Node node, int depth) {
+                if (node instanceof Element && isSkipped((Element) node)) {
+                    return FilterResult.SKIP_ENTIRELY;
+                }
+                if (node instanceof TextNode) {
+                    text.append(((TextNode) node).getWholeText()).append(' ');
+                }
+                return FilterResult.CONTINUE;
+            }
+
+            @Override
+            public FilterResult tail(Node node, int depth) {
+                return FilterResult.CONTINUE;
+            }
+        }, body);
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static boolean isSkipped(Element element) {
+        if (SKIPPED_TAGS.contains(element.normalName())) return true;
+        return element.normalName().equals("li") && element.childNodeSize() == 1
+                && element.childrenSize() == 1 && element.child(0).normalName().equals("a");
+    }
+
+}
@@ -0,0 +1,60 @@
+package searchengine.utils;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Occurrences of one lemma in a page in text order: token positions of the words and their character offsets
+ * in the indexed text.
+ */
+public class TokenPositions {
+
+    private int[] positions;
+    private int[] offsets;
+    @Getter
+    private int size;
+
+    public TokenPositions() {
+        this(4);
+    }
+
+    public TokenPositions(int capacity) {
+        positions = new int[Math.max(1, capacity)];
+        offsets = new int[positions.length];
+    }
+
+    public void add(int position, int offset) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        positions[size] = position;
+        offsets[size] = offset;
+        size++;
+    }
+
+    public int getPosition(int i) {
+        return positions[i];
+    }
+
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Returns the occurrence index of the token position or a negative value if the lemma is not there.
+     */
+    public int indexOfPosition(int position) {
+        return Arrays.binarySearch(positions, 0, size, position);
+    }
+
+    public static Map<String, Integer> getCounts(Map<String, TokenPositions> lemmas) {
+        Map<String, Integer> counts = new HashMap<>();
+        lemmas.forEach((lemma, positions) -> counts.put(lemma, positions.getSize()));
+        return counts;
+    }
+
+}
@@ -0,0 +1,188 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import searchengine.config.TrapSettings;
+import searchengine.dto.statistics.TrapStatistics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Recognizes url spaces of one site that never end: too deep or looping paths, too many urls of one
+ * path template, too many values of one query parameter and templates whose pages bring no new content.
+ * Urls of such families are suppressed, and every family is kept with the number of suppressed urls.
+ */
+@Slf4j
+public class TrapDetector {
+
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final Pattern IDENTIFIER = Pattern.compile("(?=.*\\d)[0-9a-zA-Z_-]{16,}");
+    private static final int FAMILY_SEGMENTS = 3;
+
+    private static final class Suppression {
+        private final TrapReason reason;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Suppression(TrapReason reason) {
+            this.reason = reason;
+        }
+    }
+
+    private final String siteUrl;
+    private final TrapSettings settings;
+    private final Map<String, AtomicInteger> templateCounts = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> parameterValues = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> noNewContentRuns = new ConcurrentHashMap<>();
+    private final Set<String> barrenTemplates = ConcurrentHashMap.newKeySet();
+    private final Map<String, Suppression> suppressions = new ConcurrentHashMap<>();
+
+    public TrapDetector(String siteUrl, TrapSettings settings) {
+        this.siteUrl = siteUrl;
+        this.settings = settings;
+    }
+
+    /**
+     * Checks a newly discovered path and counts it towards its template. Returns true if the path is suppressed.
+     */
+    public boolean isTrap(String path) {
+        int queryStart = path.indexOf('?');
+        String pathPart = queryStart < 0 ? path : path.substring(0, queryStart);
+        String query = queryStart < 0 ? "" : path.substring(queryStart + 1);
+        List<String> segments = getSegments(pathPart);
+        String pathTemplate = getPathTemplate(segments);
+        if (segments.size() > settings.getMaxPathSegments()) {
+            return suppress(getFamily(segments), TrapReason.PathDepth);
+        }
+        if (hasRepeatedSegment(segments)) {
+            return suppress(getFamily(segments), TrapReason.SegmentRepetition);
+        }
+        String template = pathTemplate + getQueryTemplate(query);
+        if (barrenTemplates.contains(template)) {
+            return suppress(template, TrapReason.NoNewContent);
+        }
+        String parameter = findOverflowingParameter(pathTemplate, query);
+        if (parameter != null) {
+            return suppress(pathTemplate + "?" + parameter, TrapReason.ParameterValues);
+        }
+        if (templateCounts.computeIfAbsent(template, x -> new AtomicInteger()).incrementAndGet()
+                > settings.getMaxUrlsPerTemplate()) {
+            return suppress(template, TrapReason.TemplateLimit);
+        }
+        return false;
+    }
+
+    /**
+     * Remembers whether a crawled page brought new content. A template whose last pages in a row
+     * were all duplicates, redirects to a canonical page or errors is suppressed.
+     */
+    public void recordContent(String path, boolean newContent) {
+        String template = getTemplate(path);
+        if (newContent) {
+            noNewContentRuns.remove(template);
+            return;
+        }
+        int run = noNewContentRuns.computeIfAbsent(template, x -> new AtomicInteger()).incrementAndGet();
+        if (run >= settings.getNoNewContentLimit() && barrenTemplates.add(template)) {
+            log.info("Trap detected - " + siteUrl + template + " - " + TrapReason.NoNewContent.getValue());
+        }
+    }
+
+    public int getSuppressedFamilies() {
+        return suppressions.size();
+    }
+
+    public List<TrapStatistics> getStatistics() {
+        return suppressions.entrySet().stream().map(x -> {
+            TrapStatistics statistics = new TrapStatistics();
+            statistics.setFamily(x.getKey());
+            statistics.setReason(x.getValue().reason.getValue());
+            statistics.setSuppressed(x.getValue().count.get());
+            return statistics;
+        }).collect(Collectors.toList());
+    }
+
+    private boolean suppress(String family, TrapReason reason) {
+        Suppression suppression = suppressions.computeIfAbsent(family, x -> {
+            log.info("Trap detected - " + siteUrl + x + " - " + reason.getValue());
+            return new Suppression(reason);
+        });
+        suppression.count.incrementAndGet();
+        return true;
+    }
+
+    private String findOverflowingParameter(String pathTemplate, String query) {
+        if (query.isEmpty()) return null;
+        for (String parameter : query.split("&")) {
+            int eq = parameter.indexOf('=');
+            String name = eq < 0 ? parameter : parameter.substring(0, eq);
+            String value = eq < 0 ? "" : parameter.substring(eq + 1);
+            Set<String> values = parameterValues.computeIfAbsent(pathTemplate + "?" + name,
+                    x -> ConcurrentHashMap.newKeySet());
+            if (values.contains(value)) continue;
+            if (values.size() >= settings.getMaxParamValues()) return name;
+            values.add(value);
+        }
+        return null;
+    }
+
+    private boolean hasRepeatedSegment(List<String> segments) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String segment : segments) {
+            if (counts.merge(segment, 1, Integer::sum) > settings.getMaxSegmentRepetitions()) return true;
+        }
+        return false;
+    }
+
+    private String getTemplate(String path) {
+        int queryStart = path.indexOf('?');
+        String pathTemplate = getPathTemplate(getSegments(queryStart < 0 ? path : path.substring(0, queryStart)));
+        return pathTemplate + getQueryTemplate(queryStart < 0 ? "" : path.substring(queryStart + 1));
+    }
+
+    private String getFamily(List<String> segments) {
+        String family = getPathTemplate(segments.subList(0, Math.min(segments.size(), FAMILY_SEGMENTS)));
+        return segments.size() > FAMILY_SEGMENTS ? family + "/..." : family;
+    }
+
+    private List<String> getSegments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) segments.add(segment);
+        }
+        return segments;
+    }
+
+    private String getPathTemplate(List<String> segments) {
+        StringBuilder template = new StringBuilder();
+        for (String segment : segments) {
+            int parameters = segment.indexOf(';');
+            if (parameters >= 0) segment = segment.substring(0, parameters);
+            template.append('/');
+            if (IDENTIFIER.matcher(segment).matches() && !NUMBER.matcher(segment).matches()) {
+                template.append("{id}");
+            } else {
+                template.append(NUMBER.matcher(segment.toLowerCase(Locale.ROOT)).replaceAll("{n}"));
+            }
+        }
+        return template.length() == 0 ? "/" : template.toString();
+    }
+
+    private String getQueryTemplate(String query) {
+        if (query.isEmpty()) return "";
+        List<String> names = new ArrayList<>();
+        for (String parameter : query.split("&")) {
+            int eq = parameter.indexOf('=');
+            names.add(eq < 0 ? parameter : parameter.substring(0, eq));
+        }
+        return "?" + String.join("&", names);
+    }
+
+}
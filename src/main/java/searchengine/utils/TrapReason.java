@@ -0,0 +1,21 @@
+package searchengine.utils;
+
+public enum TrapReason {
+
+    PathDepth("Слишком глубокий путь"),
+    SegmentRepetition("Повторяющиеся части пути"),
+    TemplateLimit("Слишком много адресов одного шаблона"),
+    ParameterValues("Слишком много значений параметра запроса"),
+    NoNewContent("Страницы не содержат нового контента");
+
+    private final String value;
+
+    TrapReason(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+}
@@ -0,0 +1,201 @@
+package searchengine.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings urls to one form so that variants of the same page are fetched and stored once:
+ * lower case scheme and host without www. and default port, no fragment, no dot segments and trailing slash,
+ * no tracking parameters, sorted query parameters and uniform percent-encoding.
+ */
+@Component
+public class UrlCanonicalizer {
+
+    private static final String UNRESERVED = "-._~";
+    private static final String PATH_CHARS = "!$&'()*+,;=:@/";
+    private static final String QUERY_CHARS = "!$'()*+,;:@/?";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    @Value("${indexing-settings.canonicalization.trackingParams:utm_*,fbclid,gclid,yclid,ysclid,_openstat,openstat}")
+    private List<String> trackingParams;
+
+    @Value("${indexing-settings.canonicalization.stripTrailingSlash:true}")
+    private boolean stripTrailingSlash;
+
+    public String canonicalize(String url) {
+        if (url == null) return null;
+        url = url.trim();
+        int fragment = url.indexOf('#');
+        if (fragment >= 0) url = url.substring(0, fragment);
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd <= 0) return null;
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) return null;
+        int authorityStart = schemeEnd + 3;
+        int pathStart = indexOfAny(url, "/?", authorityStart);
+        String authority = url.substring(authorityStart, pathStart < 0 ? url.length() : pathStart);
+        String rest = pathStart < 0 ? "" : url.substring(pathStart);
+        int queryStart = rest.indexOf('?');
+        String path = queryStart < 0 ? rest : rest.substring(0, queryStart);
+        String query = queryStart < 0 ? "" : rest.substring(queryStart + 1);
+        String host = getCanonicalHost(scheme, authority);
+        if (host.isEmpty()) return null;
+        String canonicalQuery = getCanonicalQuery(query);
+        return scheme + "://" + host + getCanonicalPath(path) + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery);
+    }
+
+    public String getSiteUrl(String siteUrl) {
+        String url = canonicalize(siteUrl);
+        if (url == null) return siteUrl;
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * Returns the path of the url relative to the site url, or null if the url is outside the site.
+     */
+    public String getPath(String siteUrl, String url) {
+        String canonicalUrl = canonicalize(url);
+        if (canonicalUrl == null) return null;
+        String siteBase = getSiteUrl(siteUrl);
+        if (!canonicalUrl.startsWith(siteBase)) return null;
+        String path = canonicalUrl.substring(siteBase.length());
+        if (path.isEmpty()) return "/";
+        if (path.startsWith("?")) return "/" + path;
+        return path.startsWith("/") ? path : null;
+    }
+
+    private String getCanonicalHost(String scheme, String authority) {
+        int userInfo = authority.lastIndexOf('@');
+        if (userInfo >= 0) authority = authority.substring(userInfo + 1);
+        String host = authority.toLowerCase(Locale.ROOT);
+        int portStart = host.lastIndexOf(':');
+        if (portStart >= 0 && !host.endsWith("]")) {
+            String port = host.substring(portStart + 1);
+            host = host.substring(0, portStart);
+            if (!port.isEmpty() && !(scheme.equals("http") && port.equals("80"))
+                    && !(scheme.equals("https") && port.equals("443"))) {
+                host = host + ":" + port;
+            }
+        }
+        if (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+
+    private String getCanonicalPath(String path) {
+        if (path.isEmpty()) return "/";
+        Deque<String> segments = new ArrayDeque<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 1; i < parts.length; i++) {
+            String segment = normalizeEncoding(parts[i], PATH_CHARS);
+            if (segment.equals(".")) {
+                if (i == parts.length - 1) segments.addLast("");
+            } else if (segment.equals("..")) {
+                segments.pollLast();
+                if (i == parts.length - 1) segments.addLast("");
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        String canonicalPath = "/" + String.join("/", segments);
+        if (stripTrailingSlash) {
+            while (canonicalPath.length() > 1 && canonicalPath.endsWith("/")) {
+                canonicalPath = canonicalPath.substring(0, canonicalPath.length() - 1);
+            }
+        }
+        return canonicalPath;
+    }
+
+    private String getCanonicalQuery(String query) {
+        if (query.isEmpty()) return "";
+        List<String[]> params = new ArrayList<>();
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) continue;
+            int eq = param.indexOf('=');
+            String key = normalizeEncoding(eq < 0 ? param : param.substring(0, eq), QUERY_CHARS);
+            String value = eq < 0 ? null : normalizeEncoding(param.substring(eq + 1), QUERY_CHARS + "=");
+            if (isTrackingParam(key)) continue;
+            params.add(new String[]{key, value});
+        }
+        params.sort(Comparator.<String[], String>comparing(x -> x[0])
+                .thenComparing(x -> x[1] == null ? "" : x[1]));
+        StringBuilder canonicalQuery = new StringBuilder();
+        for (String[] param : params) {
+            if (canonicalQuery.length() > 0) canonicalQuery.append('&');
+            canonicalQuery.append(param[0]);
+            if (param[1] != null) canonicalQuery.append('=').append(param[1]);
+        }
+        return canonicalQuery.toString();
+    }
+
+    private boolean isTrackingParam(String key) {
+        String name = key.toLowerCase(Locale.ROOT);
+        for (String trackingParam : trackingParams) {
+            String pattern = trackingParam.trim().toLowerCase(Locale.ROOT);
+            if (pattern.isEmpty()) continue;
+            if (pattern.endsWith("*") ? name.startsWith(pattern.substring(0, pattern.length() - 1))
+                    : name.equals(pattern)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes escaped unreserved characters, upper-cases the remaining escapes
+     * and escapes characters that are not allowed in this part of the url.
+     */
+    private String normalizeEncoding(String part, String allowedChars) {
+        StringBuilder result = new StringBuilder(part.length());
+        int i = 0;
+        while (i < part.length()) {
+            char c = part.charAt(i);
+            if (c == '%' && i + 2 < part.length() && isHex(part.charAt(i + 1)) && isHex(part.charAt(i + 2))) {
+                int value = Character.digit(part.charAt(i + 1), 16) * 16 + Character.digit(part.charAt(i + 2), 16);
+                if (value < 128 && isUnreserved((char) value)) {
+                    result.append((char) value);
+                } else {
+                    appendEscaped(result, value);
+                }
+                i += 3;
+            } else if (c < 128 && (isUnreserved(c) || allowedChars.indexOf(c) >= 0)) {
+                result.append(c);
+                i++;
+            } else {
+                int codePoint = part.codePointAt(i);
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(result, b & 0xff);
+                }
+                i += Character.charCount(codePoint);
+            }
+        }
+        return result.toString();
+    }
+
+    private void appendEscaped(StringBuilder result, int value) {
+        result.append('%').append(HEX[value >> 4]).append(HEX[value & 0xf]);
+    }
+
+    private boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || UNRESERVED.indexOf(c) >= 0;
+    }
+
+    private boolean isHex(char c) {
+        return Character.digit(c, 16) >= 0;
+    }
+
+    private int indexOfAny(String value, String chars, int from) {
+        for (int i = from; i < value.length(); i++) {
+            if (chars.indexOf(value.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+
+}
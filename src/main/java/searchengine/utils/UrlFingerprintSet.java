@@ -0,0 +1,83 @@
+package searchengine.utils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free set of visited urls. Urls are kept as 64-bit fingerprints in an open-addressing table,
+ * 8 bytes per url; urls whose probe chain is full go to a concurrent overflow set.
+ */
+public class UrlFingerprintSet {
+
+    private static final int MAX_PROBES = 64;
+    private final AtomicLongArray table;
+    private final int mask;
+    private final Set<Long> overflow = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public UrlFingerprintSet(int expectedUrls) {
+        int capacity = Integer.highestOneBit(Math.max(expectedUrls, 1024) * 2 - 1) << 1;
+        this.table = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Atomically claims the url. Only one of the concurrent callers with the same url gets {@code true}.
+     */
+    public boolean add(String url) {
+        return addFingerprint(fingerprint(url));
+    }
+
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long current = table.get((slot + probe) & mask);
+            if (current == fingerprint) return true;
+            if (current == 0) return false;
+        }
+        return overflow.contains(fingerprint);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean addFingerprint(long fingerprint) {
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = (slot + probe) & mask;
+            long current = table.get(index);
+            if (current == 0) {
+                if (table.compareAndSet(index, 0, fingerprint)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                current = table.get(index);
+            }
+            if (current == fingerprint) return false;
+        }
+        if (overflow.add(fingerprint)) {
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+}
@@ -0,0 +1,217 @@
+package searchengine.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import searchengine.dto.statistics.WriteBufferStatistics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Write-behind buffer in front of the database: producers add items and go on, a flusher thread writes them
+ * in batches of {@code batchSize} items, or earlier when the oldest item waits for {@code intervalMs}
+ * or the buffered items take half of {@code maxBytes}. Producers block while the buffer, together with
+ * the batch being written, takes more than {@code maxBytes}. After {@link #close()} the flusher writes
+ * everything left and stops.
+ */
+@Slf4j
+public class WriteBehindBuffer<T> {
+
+    public interface Writer<T> {
+        void write(List<T> items) throws Exception;
+    }
+
+    private final String name;
+    private final long maxBytes;
+    private final int batchSize;
+    private final long intervalMs;
+    private final ToLongFunction<T> sizer;
+    private final Writer<T> writer;
+    private final Consumer<T> onFailure;
+    private final ThreadFactory threadFactory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushNeeded = lock.newCondition();
+    private final ArrayDeque<Buffered<T>> items = new ArrayDeque<>();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong blockedPuts = new AtomicLong();
+    private long bufferedBytes;
+    private long writingBytes;
+    private int writingItems;
+    private boolean closed;
+    private volatile long lastFlushMs;
+    private long startTime;
+    private Thread flusher;
+
+    public WriteBehindBuffer(String name, long maxBytes, int batchSize, long intervalMs, ThreadFactory threadFactory,
+                             ToLongFunction<T> sizer, Writer<T> writer, Consumer<T> onFailure) {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.threadFactory = threadFactory;
+        this.sizer = sizer;
+        this.writer = writer;
+        this.onFailure = onFailure;
+    }
+
+    public void start() {
+        startTime = System.currentTimeMillis();
+        flusher = threadFactory.newThread(this::runFlusher);
+        flusher.setName(name + "-flusher");
+        flusher.start();
+    }
+
+    /**
+     * An item larger than {@code maxBytes} is accepted when nothing else is buffered.
+     */
+    public void put(T item) throws InterruptedException {
+        long bytes = sizer.applyAsLong(item);
+        lock.lockInterruptibly();
+        try {
+            if (!closed && bufferedBytes + writingBytes > 0 && bufferedBytes + writingBytes + bytes > maxBytes) {
+                blockedPuts.incrementAndGet();
+                while (!closed && bufferedBytes + writingBytes > 0 && bufferedBytes + writingBytes + bytes > maxBytes) {
+                    notFull.await();
+                }
+            }
+            if (!closed) {
+                items.add(new Buffered<>(item, bytes, System.currentTimeMillis()));
+                bufferedBytes += bytes;
+                if (items.size() == 1 || items.size() >= batchSize || bufferedBytes * 2 >= maxBytes) {
+                    flushNeeded.signal();
+                }
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        onFailure.accept(item);
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (flusher == null) return true;
+        flusher.join(unit.toMillis(timeout));
+        return !flusher.isAlive();
+    }
+
+    public WriteBufferStatistics getStatistics() {
+        WriteBufferStatistics statistics = new WriteBufferStatistics();
+        lock.lock();
+        try {
+            statistics.setBuffered(items.size());
+            statistics.setBufferedBytes(bufferedBytes);
+            statistics.setWriting(writingItems);
+            statistics.setWritingBytes(writingBytes);
+        } finally {
+            lock.unlock();
+        }
+        statistics.setMaxBytes(maxBytes);
+        statistics.setFlushes(flushes.get());
+        statistics.setWritten(written.get());
+        statistics.setFailed(failed.get());
+        statistics.setBlockedPuts(blockedPuts.get());
+        statistics.setLastFlushMs(lastFlushMs);
+        long duration = System.currentTimeMillis() - startTime;
+        statistics.setItemsPerSecond(startTime == 0 || duration <= 0 ? 0 : written.get() * 1000.0 / duration);
+        return statistics;
+    }
+
+    private void runFlusher() {
+        List<Buffered<T>> batch;
+        while ((batch = takeBatch()) != null) {
+            write(batch);
+        }
+        log.debug(name + " - flusher stopped");
+    }
+
+    private List<Buffered<T>> takeBatch() {
+        lock.lock();
+        try {
+            while (!closed && items.size() < batchSize && bufferedBytes * 2 < maxBytes) {
+                try {
+                    if (items.isEmpty()) {
+                        flushNeeded.await();
+                        continue;
+                    }
+                    long wait = items.peek().time + intervalMs - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    flushNeeded.await(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+            }
+            if (items.isEmpty()) return null;
+            List<Buffered<T>> batch = new ArrayList<>();
+            while (!items.isEmpty() && batch.size() < batchSize) {
+                Buffered<T> buffered = items.poll();
+                batch.add(buffered);
+                bufferedBytes -= buffered.bytes;
+                writingBytes += buffered.bytes;
+            }
+            writingItems = batch.size();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<Buffered<T>> batch) {
+        long start = System.currentTimeMillis();
+        List<T> batchItems = new ArrayList<>(batch.size());
+        long bytes = 0;
+        for (Buffered<T> buffered : batch) {
+            batchItems.add(buffered.item);
+            bytes += buffered.bytes;
+        }
+        try {
+            writer.write(batchItems);
+            written.addAndGet(batchItems.size());
+        } catch (Exception e) {
+            log.error(name + " - " + e.getMessage(), e);
+            failed.addAndGet(batchItems.size());
+            batchItems.forEach(onFailure);
+        } finally {
+            lastFlushMs = System.currentTimeMillis() - start;
+            flushes.incrementAndGet();
+            lock.lock();
+            try {
+                writingBytes -= bytes;
+                writingItems = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        log.debug(name + " - " + batchItems.size() + " items - " + lastFlushMs + " ms");
+    }
+
+    @RequiredArgsConstructor
+    private static class Buffered<T> {
+        private final T item;
+        private final long bytes;
+        private final long time;
+    }
+
+}
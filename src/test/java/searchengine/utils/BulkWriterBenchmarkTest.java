@@ -0,0 +1,155 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.Page;
+import searchengine.model.Site;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Rows per second of {@link BulkWriter} against one INSERT per row, which is what Hibernate sends for entities
+ * with IDENTITY ids. Every run is one transaction. The database is H2 in MySQL mode unless
+ * {@code -Dbenchmark.jdbcUrl}, {@code -Dbenchmark.username} and {@code -Dbenchmark.password} point to an empty
+ * scratch MySQL database: the benchmark creates its tables there and truncates them.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class BulkWriterBenchmarkTest {
+
+    private static final int PAGES = 200;
+    private static final int LEMMAS_PER_PAGE = 250;
+    private static final String INDEX_ROW_INSERT = "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES (?, ?, ?)";
+    private static final String PAGE_ROW_INSERT = "INSERT INTO page (site_id, generation, path, code, title, text, " +
+            "last_seen) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Test
+    void compareRowsPerSecond() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("benchmark.jdbcUrl", "jdbc:h2:mem:bulkwriter;MODE=MySQL;DB_CLOSE_DELAY=-1"),
+                System.getProperty("benchmark.username", "sa"), System.getProperty("benchmark.password", ""));
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        createTables(jdbcTemplate);
+        BulkWriter bulkWriter = new BulkWriter(jdbcTemplate, new PageContentStore(jdbcTemplate));
+        ReflectionTestUtils.setField(bulkWriter, "indexBatchSize", 5000);
+        ReflectionTestUtils.setField(bulkWriter, "pageBatchSize", 100);
+        ReflectionTestUtils.setField(bulkWriter, "maxStatementBytes", 16777216L);
+        Map<Integer, Map<Integer, Integer>> pageRanks = createPageRanks();
+        int indexRows = PAGES * LEMMAS_PER_PAGE;
+
+        measure(transactionTemplate, () -> insertIndexRows(jdbcTemplate, pageRanks));
+        measure(transactionTemplate, () -> bulkWriter.insertIndexes(pageRanks));
+        truncate(jdbcTemplate);
+        double indexRowRate = indexRows * 1e9 / measure(transactionTemplate, () -> insertIndexRows(jdbcTemplate, pageRanks));
+        double indexBulkRate = indexRows * 1e9 / measure(transactionTemplate, () -> bulkWriter.insertIndexes(pageRanks));
+        assertEquals(2L * indexRows, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `index`", Long.class));
+
+        List<Page> rowPages = createPages("/row/");
+        List<Page> bulkPages = createPages("/bulk/");
+        double pageRowRate = PAGES * 1e9 / measure(transactionTemplate, () -> insertPageRows(jdbcTemplate, rowPages));
+        double pageBulkRate = PAGES * 1e9 / measure(transactionTemplate, () -> bulkWriter.insertPages(bulkPages));
+        assertTrue(bulkPages.stream().allMatch(x -> x.getId() > 0));
+
+        log.info(String.format("BulkWriter benchmark - %s - index: %d rows, row by row %.0f rows/s, bulk %.0f rows/s, " +
+                        "x%.1f; page: %d rows, row by row %.0f rows/s, bulk %.0f rows/s, x%.1f",
+                jdbcTemplate.execute((ConnectionCallback<String>) x -> x.getMetaData().getDatabaseProductName()),
+                indexRows, indexRowRate, indexBulkRate, indexBulkRate / indexRowRate,
+                PAGES, pageRowRate, pageBulkRate, pageBulkRate / pageRowRate));
+    }
+
+    private long measure(TransactionTemplate transactionTemplate, Runnable writes) {
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> writes.run());
+        return System.nanoTime() - start;
+    }
+
+    private void insertIndexRows(JdbcTemplate jdbcTemplate, Map<Integer, Map<Integer, Integer>> pageRanks) {
+        pageRanks.forEach((pageId, ranks) -> ranks.forEach((lemmaId, rank) ->
+                jdbcTemplate.update(INDEX_ROW_INSERT, pageId, lemmaId, rank)));
+    }
+
+    private void insertPageRows(JdbcTemplate jdbcTemplate, List<Page> pages) {
+        for (Page page : pages) {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(PAGE_ROW_INSERT, Statement.RETURN_GENERATED_KEYS);
+                statement.setInt(1, page.getSite().getId());
+                statement.setInt(2, page.getGeneration());
+                statement.setString(3, page.getPath());
+                statement.setInt(4, page.getCode());
+                statement.setString(5, page.getTitle());
+                statement.setString(6, page.getText());
+                statement.setTimestamp(7, Timestamp.valueOf(page.getLastSeen()));
+                return statement;
+            }, keyHolder);
+            page.setId(keyHolder.getKey().intValue());
+        }
+    }
+
+    private Map<Integer, Map<Integer, Integer>> createPageRanks() {
+        Map<Integer, Map<Integer, Integer>> pageRanks = new HashMap<>();
+        for (int page = 1; page <= PAGES; page++) {
+            Map<Integer, Integer> ranks = new HashMap<>();
+            for (int lemma = 1; lemma <= LEMMAS_PER_PAGE; lemma++) {
+                ranks.put(page * LEMMAS_PER_PAGE + lemma, 1 + lemma % 7);
+            }
+            pageRanks.put(page, ranks);
+        }
+        return pageRanks;
+    }
+
+    private List<Page> createPages(String prefix) {
+        Site site = new Site();
+        site.setId(1);
+        String text = "Text of a crawled page with some words in it. ".repeat(40);
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < PAGES; i++) {
+            Page page = new Page();
+            page.setSite(site);
+            page.setPath(prefix + i);
+            page.setCode(200);
+            page.setTitle("Page " + i);
+            page.setText(text);
+            page.setLastSeen(LocalDateTime.now());
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private void createTables(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS `index` (id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "page_id INT NOT NULL, lemma_id INT NOT NULL, `rank` FLOAT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS page (id INT AUTO_INCREMENT PRIMARY KEY, site_id INT NOT NULL, " +
+                "generation INT NOT NULL DEFAULT 0, path VARCHAR(768) NOT NULL, code INT NOT NULL, title TEXT, " +
+                "text MEDIUMTEXT, etag VARCHAR(255), last_modified VARCHAR(64), content_hash VARCHAR(64), " +
+                "last_seen TIMESTAMP NULL, sim_hash BIGINT, duplicate_of VARCHAR(768))");
+        truncate(jdbcTemplate);
+    }
+
+    private void truncate(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("TRUNCATE TABLE `index`");
+        jdbcTemplate.execute("TRUNCATE TABLE page");
+    }
+
+}
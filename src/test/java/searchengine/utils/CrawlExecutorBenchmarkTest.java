@@ -0,0 +1,112 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.config.CrawlExecutor;
+import searchengine.config.DOMConfiguration;
+import searchengine.config.HostConcurrencySettings;
+import searchengine.config.PipelineSettings;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fetch stage throughput in the forkjoin and the virtual execution modes against a slow local server.
+ * Stages are built as in {@link CrawlPipeline} with the default {@link PipelineSettings}, and every item
+ * is fetched through {@link DOMConfiguration}, {@link JsoupPageFetcher} and {@link HostPolitenessScheduler}
+ * as the crawler does it, without the delay between requests. The virtual stage is measured twice:
+ * with a fetcher on {@code fetchThreads} platform threads, which caps it at the forkjoin rate,
+ * and with a fetcher on virtual threads. Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class CrawlExecutorBenchmarkTest {
+
+    private static final int PAGES = 1000;
+    private static final int FETCH_THREADS = 16;
+    private static final long SERVER_DELAY_MS = 100;
+
+    @Test
+    void compareExecutionModes() throws Exception {
+        PipelineSettings settings = new PipelineSettings();
+        try (LocalHttpServer server = new LocalHttpServer(LocalHttpServer.createHtml(20), SERVER_DELAY_MS)) {
+            double forkJoinRate = measure(CrawlExecutor.FORKJOIN, CrawlExecutor.FORKJOIN, settings, server);
+            double cappedRate = measure(CrawlExecutor.VIRTUAL, CrawlExecutor.FORKJOIN, settings, server);
+            double virtualRate = measure(CrawlExecutor.VIRTUAL, CrawlExecutor.VIRTUAL, settings, server);
+            log.info(String.format("Crawl executor benchmark - %d pages, server delay %d ms - forkjoin (%d workers) " +
+                            "%.0f pages/s, virtual stage on %d fetch threads %.0f pages/s, virtual (%d fetches) " +
+                            "%.0f pages/s, x%.2f", PAGES, SERVER_DELAY_MS, settings.getFetchWorkers(), forkJoinRate,
+                    FETCH_THREADS, cappedRate, settings.getMaxVirtualFetches(), virtualRate,
+                    virtualRate / forkJoinRate));
+        }
+    }
+
+    private double measure(CrawlExecutor stageExecutor, CrawlExecutor fetchExecutor, PipelineSettings settings,
+                           LocalHttpServer server) throws Exception {
+        HostPolitenessScheduler scheduler = new HostPolitenessScheduler(new HostConcurrencySettings());
+        ReflectionTestUtils.setField(scheduler, "delayMs", 0L);
+        scheduler.init();
+        PipelineSettings fetcherSettings = new PipelineSettings();
+        fetcherSettings.setExecutor(fetchExecutor);
+        JsoupPageFetcher fetcher = new JsoupPageFetcher(scheduler, PageFetcherBenchmarkTest.createContentPolicy(),
+                fetcherSettings);
+        ReflectionTestUtils.setField(fetcher, "userAgent", "NastyaSearchBot");
+        ReflectionTestUtils.setField(fetcher, "referer", "https://www.google.com");
+        ReflectionTestUtils.setField(fetcher, "timeoutMs", 10000L);
+        ReflectionTestUtils.setField(fetcher, "fetchThreads", FETCH_THREADS);
+        fetcher.init();
+        DOMConfiguration domConfiguration = new DOMConfiguration(fetcher);
+
+        CountDownLatch done = new CountDownLatch(PAGES);
+        AtomicInteger failed = new AtomicInteger();
+        PipelineStage<String> stage = createStage(stageExecutor, settings, url -> {
+            try {
+                FetchResult result = domConfiguration.fetch(url);
+                if (result == null || result.getStatusCode() != 200) failed.incrementAndGet();
+            } finally {
+                done.countDown();
+            }
+        }, url -> {
+            failed.incrementAndGet();
+            done.countDown();
+        });
+        stage.start();
+        try {
+            String prefix = "/" + stageExecutor.name().toLowerCase() + "-" + fetchExecutor.name().toLowerCase() + "/";
+            long start = System.nanoTime();
+            for (int i = 0; i < PAGES; i++) {
+                stage.put(server.getUrl(prefix + i));
+            }
+            assertTrue(done.await(5, TimeUnit.MINUTES));
+            long elapsed = System.nanoTime() - start;
+            assertEquals(0, failed.get());
+            return PAGES * 1e9 / elapsed;
+        } finally {
+            stage.stop();
+            stage.awaitTermination(1, TimeUnit.MINUTES);
+            fetcher.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    private PipelineStage<String> createStage(CrawlExecutor executor, PipelineSettings settings,
+                                              PipelineStage.Handler<String> handler,
+                                              Consumer<String> onFailure) {
+        ExecutorService service = executor == CrawlExecutor.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor() : new ForkJoinPool(settings.getFetchWorkers());
+        int concurrency = executor == CrawlExecutor.VIRTUAL ? settings.getMaxVirtualFetches() : settings.getFetchWorkers();
+        return new PipelineStage<>("fetch", concurrency, Integer.MAX_VALUE,
+                HostPolitenessScheduler.daemonThreadFactory("benchmark"), service, handler, onFailure);
+    }
+
+}
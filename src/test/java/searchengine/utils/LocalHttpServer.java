@@ -0,0 +1,80 @@
+package searchengine.utils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded HTTP server for tests and benchmarks. Every path answers with the same html page after
+ * {@code delayMs}, gzip-compressed when the client accepts it.
+ */
+class LocalHttpServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    LocalHttpServer(String html, long delayMs) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        byte[] gzippedBody = gzip(body);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/", exchange -> {
+            try {
+                if (delayMs > 0) Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            byte[] response = gzip ? gzippedBody : body;
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String getUrl(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static String createHtml(int paragraphs) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Benchmark page</title></head><body>");
+        for (int i = 0; i < paragraphs; i++) {
+            html.append("<p>Paragraph ").append(i).append(" of a page served to the crawler, with a ")
+                    .append("<a href=\"/page/").append(i).append("\">link</a> to another page.</p>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+}
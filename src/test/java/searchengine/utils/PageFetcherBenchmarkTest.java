@@ -0,0 +1,96 @@
+package searchengine.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import searchengine.config.HostConcurrencySettings;
+import searchengine.config.PipelineSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Pages per second of the Jsoup and the HttpClient fetchers against a local server, html parsing included.
+ * Both fetchers use the concurrency of application.yaml: 16 fetch threads and 64 requests in flight.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Slf4j
+@Tag("benchmark")
+class PageFetcherBenchmarkTest {
+
+    private static final int PAGES = 2000;
+    private static final int WARMUP_PAGES = 200;
+    private static final long SERVER_DELAY_MS = 5;
+
+    @Test
+    void comparePagesPerSecond() throws Exception {
+        try (LocalHttpServer server = new LocalHttpServer(LocalHttpServer.createHtml(200), SERVER_DELAY_MS)) {
+            HostPolitenessScheduler scheduler = new HostPolitenessScheduler(new HostConcurrencySettings());
+            ReflectionTestUtils.setField(scheduler, "delayMs", 0L);
+            scheduler.init();
+            ContentPolicy contentPolicy = createContentPolicy();
+            PipelineSettings pipelineSettings = new PipelineSettings();
+
+            JsoupPageFetcher jsoupFetcher = new JsoupPageFetcher(scheduler, contentPolicy, pipelineSettings);
+            setCommonFields(jsoupFetcher);
+            ReflectionTestUtils.setField(jsoupFetcher, "fetchThreads", 16);
+            jsoupFetcher.init();
+
+            HttpClientPageFetcher httpClientFetcher = new HttpClientPageFetcher(scheduler, contentPolicy, pipelineSettings);
+            setCommonFields(httpClientFetcher);
+            ReflectionTestUtils.setField(httpClientFetcher, "maxInFlight", 64);
+            httpClientFetcher.init();
+            try {
+                double jsoupRate = measure(jsoupFetcher, server, "/jsoup/");
+                double httpClientRate = measure(httpClientFetcher, server, "/async/");
+                log.info(String.format("PageFetcher benchmark - %d pages, server delay %d ms - jsoup %.0f pages/s, " +
+                        "async %.0f pages/s, x%.2f", PAGES, SERVER_DELAY_MS, jsoupRate, httpClientRate,
+                        httpClientRate / jsoupRate));
+            } finally {
+                jsoupFetcher.shutdown();
+                httpClientFetcher.shutdown();
+                scheduler.shutdown();
+            }
+        }
+    }
+
+    private double measure(PageFetcher fetcher, LocalHttpServer server, String prefix) {
+        fetchAll(fetcher, server, prefix + "warmup/", WARMUP_PAGES);
+        long start = System.nanoTime();
+        fetchAll(fetcher, server, prefix, PAGES);
+        return PAGES * 1e9 / (System.nanoTime() - start);
+    }
+
+    private void fetchAll(PageFetcher fetcher, LocalHttpServer server, String prefix, int pages) {
+        List<CompletableFuture<FetchResult>> results = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            results.add(fetcher.fetch(server.getUrl(prefix + i)).thenApply(result -> {
+                result.getDocument();
+                return result;
+            }));
+        }
+        for (CompletableFuture<FetchResult> result : results) {
+            assertEquals(200, result.join().getStatusCode());
+        }
+    }
+
+    private void setCommonFields(PageFetcher fetcher) {
+        ReflectionTestUtils.setField(fetcher, "userAgent", "NastyaSearchBot");
+        ReflectionTestUtils.setField(fetcher, "referer", "https://www.google.com");
+        ReflectionTestUtils.setField(fetcher, "timeoutMs", 10000L);
+    }
+
+    static ContentPolicy createContentPolicy() {
+        ContentPolicy contentPolicy = new ContentPolicy();
+        ReflectionTestUtils.setField(contentPolicy, "maxBodyBytes", 5242880L);
+        ReflectionTestUtils.setField(contentPolicy, "maxResourceBytes", 52428800L);
+        ReflectionTestUtils.setField(contentPolicy, "allowedTypes", List.of("text/html", "application/xhtml+xml"));
+        ReflectionTestUtils.setField(contentPolicy, "blockedExtensions", List.of("jpg", "png", "pdf"));
+        return contentPolicy;
+    }
+
+}
@@ -0,0 +1,118 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhraseQueryTest {
+
+    /**
+     * Every word is a token, words of three and more letters are their own lemmas, shorter ones are not indexed.
+     */
+    private final LemmasFinder lemmasFinder = new LemmasFinder(null, null) {
+        private final Pattern word = Pattern.compile("\\p{L}+");
+
+        @Override
+        public Map<String, TokenPositions> getTextLemmaPositions(String text) {
+            Map<String, TokenPositions> lemmas = new HashMap<>();
+            Matcher matcher = word.matcher(text);
+            int position = 0;
+            while (matcher.find()) {
+                String lemma = matcher.group().toLowerCase(Locale.ROOT);
+                if (lemma.length() >= 3) {
+                    lemmas.computeIfAbsent(lemma, x -> new TokenPositions()).add(position, matcher.start());
+                }
+                position++;
+            }
+            return lemmas;
+        }
+    };
+
+    @Test
+    void ignoresQueriesWithoutPhrases() {
+        assertTrue(PhraseQuery.parse("search engine", lemmasFinder).isEmpty());
+        assertTrue(PhraseQuery.parse("\"search\" engine", lemmasFinder).isEmpty());
+    }
+
+    @Test
+    void collectsLemmasOfAllPhrases() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\" and \"quick index\"", lemmasFinder);
+
+        assertFalse(query.isEmpty());
+        assertEquals(Set.of("search", "engine", "quick", "index"), query.getLemmas());
+    }
+
+    @Test
+    void matchesAdjacentWordsAndReturnsOffsetOfFirstWord() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertEquals(List.of(9), query.match(page("a simple search engine")));
+    }
+
+    @Test
+    void matchesPhraseAtPositionZero() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertEquals(List.of(0), query.match(page("search engine of a site")));
+    }
+
+    @Test
+    void doesNotMatchSeparatedWords() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertNull(query.match(page("search with an engine")));
+    }
+
+    @Test
+    void doesNotMatchWordsInOtherOrder() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertNull(query.match(page("engine search")));
+    }
+
+    @Test
+    void doesNotMatchPageWithoutLemma() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertNull(query.match(page("search results")));
+    }
+
+    @Test
+    void keepsDistanceOfWordsThatAreNotIndexed() {
+        PhraseQuery query = PhraseQuery.parse("\"cat in hat\"", lemmasFinder);
+
+        assertEquals(List.of(0), query.match(page("cat on hat")));
+        assertNull(query.match(page("cat hat")));
+    }
+
+    @Test
+    void findsLaterOccurrenceWhenFirstDoesNotMatch() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\"", lemmasFinder);
+
+        assertEquals(List.of(24), query.match(page("search for a good site: search engine")));
+    }
+
+    @Test
+    void requiresEveryPhrase() {
+        PhraseQuery query = PhraseQuery.parse("\"search engine\" \"quick index\"", lemmasFinder);
+
+        assertEquals(List.of(0, 18), query.match(page("search engine and quick index")));
+        assertNull(query.match(page("search engine and slow index")));
+    }
+
+    private Map<String, TokenPositions> page(String text) {
+        return PositionCodec.decode(PositionCodec.encode(lemmasFinder.getTextLemmaPositions(text)), null);
+    }
+
+}
@@ -0,0 +1,112 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionCodecTest {
+
+    @Test
+    void encodesEmptyPageToEmptyArray() {
+        byte[] data = PositionCodec.encode(new HashMap<>());
+
+        assertEquals(0, data.length);
+        assertTrue(PositionCodec.decode(data, null).isEmpty());
+    }
+
+    @Test
+    void roundTripsLemmaWithoutOccurrences() {
+        Map<String, TokenPositions> decoded = roundTrip(Map.of("слово", positions()));
+
+        assertEquals(Set.of("слово"), decoded.keySet());
+        assertEquals(0, decoded.get("слово").getSize());
+    }
+
+    @Test
+    void roundTripsSinglePosition() {
+        Map<String, TokenPositions> decoded = roundTrip(Map.of("word", positions(7, 42)));
+
+        assertOccurrences(decoded.get("word"), 7, 42);
+    }
+
+    @Test
+    void roundTripsFirstTokenAtPositionZero() {
+        Map<String, TokenPositions> decoded = roundTrip(Map.of("first", positions(0, 0, 1, 6)));
+
+        assertOccurrences(decoded.get("first"), 0, 0, 1, 6);
+    }
+
+    @Test
+    void roundTripsGapsLargerThanThreeVarIntBytes() {
+        int[] occurrences = {
+                0, 0,
+                1, 5,
+                (1 << 21) - 1, (1 << 21),
+                (1 << 21) + 1, (1 << 28),
+                (1 << 28) + 3, (1 << 30),
+                Integer.MAX_VALUE - 1, Integer.MAX_VALUE
+        };
+
+        Map<String, TokenPositions> decoded = roundTrip(Map.of("gap", positions(occurrences)));
+
+        assertOccurrences(decoded.get("gap"), occurrences);
+    }
+
+    @Test
+    void writesDeltasAsVarInts() {
+        int[][] sizes = {{0, 1}, {127, 1}, {128, 2}, {16383, 2}, {16384, 3}, {(1 << 21) - 1, 3}, {1 << 21, 4},
+                {(1 << 28) - 1, 4}, {1 << 28, 5}, {Integer.MAX_VALUE, 5}};
+        for (int[] size : sizes) {
+            byte[] data = PositionCodec.encode(Map.of("x", positions(size[0], 0)));
+            // name length, name, entry length, count, position delta, offset delta
+            assertEquals(5 + size[1], data.length, "position " + size[0]);
+        }
+    }
+
+    @Test
+    void decodesOnlyRequestedLemmas() {
+        Map<String, TokenPositions> lemmas = new HashMap<>();
+        lemmas.put("поиск", positions(3, 20, 9, 61));
+        lemmas.put("движок", positions(4, 26));
+        lemmas.put("search", positions(1 << 22, 1 << 25));
+        byte[] data = PositionCodec.encode(lemmas);
+
+        Map<String, TokenPositions> decoded = PositionCodec.decode(data, Set.of("движок", "search", "missing"));
+
+        assertEquals(Set.of("движок", "search"), decoded.keySet());
+        assertOccurrences(decoded.get("движок"), 4, 26);
+        assertOccurrences(decoded.get("search"), 1 << 22, 1 << 25);
+        assertEquals(3, PositionCodec.decode(data, null).size());
+    }
+
+    private static Map<String, TokenPositions> roundTrip(Map<String, TokenPositions> lemmas) {
+        return PositionCodec.decode(PositionCodec.encode(lemmas), null);
+    }
+
+    /**
+     * @param occurrences pairs of token position and character offset
+     */
+    private static TokenPositions positions(int... occurrences) {
+        TokenPositions positions = new TokenPositions();
+        for (int i = 0; i < occurrences.length; i += 2) {
+            positions.add(occurrences[i], occurrences[i + 1]);
+        }
+        return positions;
+    }
+
+    private static void assertOccurrences(TokenPositions positions, int... occurrences) {
+        int[] actual = new int[positions.getSize() * 2];
+        for (int i = 0; i < positions.getSize(); i++) {
+            actual[i * 2] = positions.getPosition(i);
+            actual[i * 2 + 1] = positions.getOffset(i);
+        }
+        assertArrayEquals(occurrences, actual);
+    }
+
+}
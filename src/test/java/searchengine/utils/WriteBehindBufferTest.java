@@ -0,0 +1,196 @@
+package searchengine.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindBufferTest {
+
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    private static final ThreadFactory DAEMON_THREADS = runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private final BlockingQueue<List<Integer>> batches = new LinkedBlockingQueue<>();
+    private final List<Integer> failed = new CopyOnWriteArrayList<>();
+    private WriteBehindBuffer<Integer> buffer;
+
+    @AfterEach
+    void closeBuffer() throws InterruptedException {
+        if (buffer != null) {
+            buffer.close();
+            buffer.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void flushesFullBatch() throws InterruptedException {
+        buffer = createBuffer(1000, 3, HOUR_MS, batches::add);
+        buffer.start();
+
+        putAll(1, 2, 3, 4);
+
+        assertEquals(List.of(1, 2, 3), batches.poll(5, TimeUnit.SECONDS));
+        assertNull(batches.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void flushesWhenHalfOfMaxBytesIsBuffered() throws InterruptedException {
+        buffer = createBuffer(40, 100, HOUR_MS, batches::add);
+        buffer.start();
+
+        putAll(1, 2);
+
+        assertEquals(List.of(1, 2), batches.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void flushesOldestItemAfterInterval() throws InterruptedException {
+        buffer = createBuffer(1000, 100, 100, batches::add);
+        buffer.start();
+        // the flusher is waiting on an empty buffer when the item comes
+        Thread.sleep(100);
+        long start = System.currentTimeMillis();
+
+        putAll(1);
+        List<Integer> batch = batches.poll(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(1), batch);
+        assertTrue(System.currentTimeMillis() - start >= 90, "flushed before the interval");
+    }
+
+    @Test
+    void keepsWaitTimeOfItemsLeftAfterBatch() throws InterruptedException {
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        buffer = createBuffer(1000, 2, 300, items -> {
+            if (firstWrite.getCount() > 0) {
+                firstWrite.countDown();
+                Thread.sleep(400);
+            }
+            batches.add(items);
+        });
+        buffer.start();
+        long start = System.currentTimeMillis();
+        putAll(1, 2);
+        assertTrue(firstWrite.await(5, TimeUnit.SECONDS));
+
+        // 5 is left behind when the flusher is back, it has already waited for the interval
+        putAll(3, 4, 5);
+
+        assertEquals(List.of(1, 2), batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(3, 4), batches.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(5), batches.poll(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start < 600, "left item waited for another interval");
+    }
+
+    @Test
+    void flushesEverythingOnClose() throws InterruptedException {
+        buffer = createBuffer(1000, 2, HOUR_MS, batches::add);
+        buffer.start();
+
+        putAll(1, 2, 3, 4, 5);
+        buffer.close();
+
+        assertTrue(buffer.awaitTermination(5, TimeUnit.SECONDS));
+        List<Integer> written = new ArrayList<>();
+        batches.forEach(written::addAll);
+        assertEquals(List.of(1, 2, 3, 4, 5), written);
+        assertEquals(5, buffer.getStatistics().getWritten());
+        assertEquals(0, buffer.getStatistics().getBuffered());
+    }
+
+    @Test
+    void rejectsItemsAfterClose() throws InterruptedException {
+        buffer = createBuffer(1000, 100, HOUR_MS, batches::add);
+        buffer.start();
+        buffer.close();
+
+        putAll(1);
+
+        assertEquals(List.of(1), failed);
+        assertTrue(buffer.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(batches.isEmpty());
+    }
+
+    @Test
+    void blocksProducerWhileBufferIsFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        buffer = createBuffer(20, 1, HOUR_MS, items -> {
+            writing.countDown();
+            release.await();
+            batches.add(items);
+        });
+        buffer.start();
+        putAll(1);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        putAll(2);
+
+        Thread producer = new Thread(() -> {
+            try {
+                buffer.put(3);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+
+        assertTrue(producer.isAlive(), "producer is not blocked");
+        assertEquals(1, buffer.getStatistics().getBlockedPuts());
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive(), "producer is not released");
+        buffer.close();
+        assertTrue(buffer.awaitTermination(5, TimeUnit.SECONDS));
+        List<Integer> written = new ArrayList<>();
+        batches.forEach(written::addAll);
+        assertEquals(List.of(1, 2, 3), written);
+    }
+
+    @Test
+    void passesFailedBatchToFailureHandler() throws InterruptedException {
+        buffer = createBuffer(1000, 2, HOUR_MS, items -> {
+            throw new IllegalStateException("database is down");
+        });
+        buffer.start();
+
+        putAll(1, 2);
+        buffer.close();
+
+        assertTrue(buffer.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2), failed);
+        assertEquals(2, buffer.getStatistics().getFailed());
+    }
+
+    /**
+     * Every item takes 10 bytes.
+     */
+    private WriteBehindBuffer<Integer> createBuffer(long maxBytes, int batchSize, long intervalMs,
+                                                    WriteBehindBuffer.Writer<Integer> writer) {
+        return new WriteBehindBuffer<>("test", maxBytes, batchSize, intervalMs, DAEMON_THREADS, item -> 10,
+                writer, failed::add);
+    }
+
+    private void putAll(Integer... items) throws InterruptedException {
+        for (Integer item : items) {
+            buffer.put(item);
+        }
+    }
+
+}